@@ -3,6 +3,10 @@
 
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ABMinimaxAgent implements Agent{
 	protected int player;
@@ -18,6 +22,40 @@ public class ABMinimaxAgent implements Agent{
 	public static final int DCOMPLEX5 = 7; 
 	public static final int DCOMPLEX6 = 8;
 
+	// The search run from the root, kept across moves so its buffers are reused; rebuilt when an option changes
+	protected NegamaxSearch search = null;
+
+	// Results of earlier searches, kept across moves; null if disabled 
+	protected TranspositionTable table = null;
+
+	// Killer moves and history scores used to order successors; null if disabled, leaving the table's
+	// best move first and the rest in board order
+	protected MoveOrdering ordering = null;
+
+	// Whether to search with principal variation search: each node's first successor gets the full window
+	// and the rest a null window, proving them no better, and are re-searched only if that fails
+	protected boolean principalVariation = false;
+
+	// Whether the search's positions maintain their evaluation features incrementally (see GameState)
+	protected boolean incrementalFeatures = false;
+
+	// Root splitting: the root moves are searched as parallel tasks in this pool; null to search them in turn
+	protected ForkJoinPool rootPool = null;
+
+	// Splitting at interior nodes (see NegamaxSearch): the pool searches run in, null to search on the
+	// calling thread alone; and the shallowest depth left to search at which a node is split
+	protected ForkJoinPool splitPool = null;
+	protected int minSplitDepth = 0;
+
+	// The move ordering of each thread of the root and split pools, kept across moves, as killers and
+	// history are not shared between threads
+	protected ThreadLocal<MoveOrdering> workerOrderings = new ThreadLocal<MoveOrdering>();
+
+	// Counts the moves searched, and the board of the latest, so each thread's move ordering can be
+	// prepared for a new search (see workerOrdering) the first time the thread searches in it
+	protected int searchGeneration = 0;
+	protected BoardGeometry searchGeometry = null;
+
 	public ABMinimaxAgent(int _player, int _strategy, int _depthLimit){
 		player=_player;
 		depthLimit=_depthLimit;
@@ -28,23 +66,129 @@ public class ABMinimaxAgent implements Agent{
 
 	}
 
+	// Makes this agent's searches maintain evaluation features incrementally instead of computing them at each leaf
+	public void setIncrementalFeatures(boolean incremental){
+		incrementalFeatures = incremental;
+	}
+
+	// Returns the copy of g that a search applies and undoes its moves on. Only a search with a table
+	// needs the hashes of the position's symmetric images
+	protected GameState searchState(GameState g){
+		GameState state = g.copy();
+		state.setIncrementalFeatures(incrementalFeatures);
+		state.setSymmetryHashes(table != null);
+		return state;
+	}
+
+	// Gives this agent a transposition table using up to the given number of megabytes (0 to disable)
+	public void setTranspositionTable(int megabytes){
+		if(megabytes > 0){
+			table = new TranspositionTable(megabytes);
+		} else {
+			table = null;
+		}
+		search = null;
+	}
+
+	// Makes this agent order successors by killer moves and history scores, learned from earlier cutoffs
+	public void setMoveOrdering(boolean enabled){
+		if(enabled){
+			ordering = new MoveOrdering();
+		} else {
+			ordering = null;
+		}
+		search = null;
+	}
+
+	// Makes this agent search with principal variation search (NegaScout) instead of full windows
+	public void setPrincipalVariationSearch(boolean enabled){
+		principalVariation = enabled;
+		search = null;
+	}
+
+	// Makes this agent search the root moves in parallel on the given number of threads (1 to search them in turn)
+	public void setRootParallelism(int threads){
+		if(threads < 1){
+			throw new IllegalArgumentException("Must search with at least one thread");
+		}
+		if(rootPool != null){
+			rootPool.shutdown();
+		}
+		rootPool = (threads > 1) ? new ForkJoinPool(threads) : null;
+	}
+
+	// Makes this agent's searches split nodes with at least minDepth plies left to search between the given
+	// number of threads, searching the eldest successor first and the rest in parallel (1 thread to disable)
+	public void setSplitParallelism(int threads, int minDepth){
+		if(threads < 1 || minDepth < 1){
+			throw new IllegalArgumentException("Must search with at least one thread and split at depth at least 1");
+		}
+		if(splitPool != null){
+			splitPool.shutdown();
+		}
+		splitPool = (threads > 1) ? new ForkJoinPool(threads) : null;
+		minSplitDepth = minDepth;
+		search = null;
+	}
+
+	// Returns the move ordering for a root or split search task on the current thread, or null if ordering
+	// is off. The first time a thread asks during a search, its ordering forgets the killers of the
+	// previous search and ages its history, as this agent's own does in newSearch
+	protected MoveOrdering workerOrdering(){
+		if(ordering == null){
+			return null;
+		}
+		MoveOrdering threadOrdering = workerOrderings.get();
+		if(threadOrdering == null){
+			threadOrdering = new MoveOrdering();
+			workerOrderings.set(threadOrdering);
+		}
+		if(threadOrdering.generation != searchGeneration){
+			threadOrdering.newSearch(searchGeometry);
+			threadOrdering.generation = searchGeneration;
+		}
+		return threadOrdering;
+	}
+
+	// Call at the start of each move's search from g: lets the table replace earlier searches' entries,
+	// and prepares the move orderings for new positions
+	protected void newSearch(GameState g){
+		if(table != null){
+			table.newSearch();
+		}
+		if(ordering != null){
+			ordering.newSearch(g.geometry);
+		}
+		searchGeneration++;
+		searchGeometry = g.geometry;
+	}
+
 	// Find and return minimax-recommended move 
 	public Move getMove(GameState g, Move lastMove){
-		// Generate possible successors 
-		ArrayList<Move> successors = g.getPossibleMoves();
+		newSearch(g);
+
+		// Generate possible successors, leaving out moves symmetric to earlier ones
+		ArrayList<Move> successors = rootMoves(g);
+		if(rootPool != null){
+			return parallelRootSearch(g, successors);
+		}
 		
 		int bestMoveValue = Integer.MIN_VALUE;
 		Move bestMove = null;
 
+		// Search on a private copy, applying and undoing moves in place
+		GameState state = searchState(g);
+
 		for(int i=0; i<successors.size(); i++){
 			// Get gamestate resulting from each 
 			Move move = successors.get(i);
 			//System.out.println(move);
-			GameState result = g.applyMove(move);
-			//System.out.println(result);
+			state.applyTrustedMove(move);
+			//System.out.println(state);
 
 			//Apply minimax to each to determine expected value 
-			int value = minValue(result, 1, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE);
+			int value = rootValue(state, depthLimit, bestMoveValue);
+			state.undoMove(move);
 
 			if(value > bestMoveValue){
 				bestMoveValue = value;
@@ -55,57 +199,95 @@ public class ABMinimaxAgent implements Agent{
 		return bestMove;
 	}
 
-	protected int maxValue(GameState g, int depth, int depthLimit, int alpha, int beta){
-		
-		// Depth/terminal cutoff 
-		if(g.isTerminal() || depth == depthLimit){
-			return e(g);
-		}
+	// Returns the moves to search from g, in the order to search them
+	protected ArrayList<Move> rootMoves(GameState g){
+		return g.getDistinctMoves();
+	}
 
-		// Generate successors
-		ArrayList<Move> successors = g.getPossibleMoves();
+	// Searches each of the successors of g as a task in the root pool and returns the first of the best,
+	// the same move the search in turn without a table returns, whatever the number of threads. The tasks
+	// share the best (value, index) found so far: a task only needs to find out whether its move beats that,
+	// so it searches with alpha just below the best value if its move comes earlier (and so wins a tie),
+	// else at it. With a table, tasks only take cutoffs from entries of exactly the depth needed: the same
+	// position can be reached at different plies (a double jump, or two single jumps), so which deeper
+	// entries a task finds would depend on how the threads are scheduled
+	protected Move parallelRootSearch(GameState g, final ArrayList<Move> successors){
+		final AtomicLong best = new AtomicLong(Long.MIN_VALUE);
+		final ArrayList<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
 		for(int i=0; i<successors.size(); i++){
-			// Evaluate this successor
-			GameState result = g.applyMove(successors.get(i));
-			int value = minValue(result, depth+1, depthLimit, alpha, beta);
-			
-			// Update alpha 
-			if(value > alpha){
-				alpha = value;
+			final int index = i;
+			final GameState state = searchState(g);
+			tasks.add(new RecursiveAction(){
+				protected void compute(){
+					// Made here, on the thread that runs the task, so it gets that thread's move ordering
+					NegamaxSearch search = new NegamaxSearch(ABMinimaxAgent.this, workerOrdering());
+					search.exactDepthCutoffs = true;
+					int alpha = Integer.MIN_VALUE;
+					long bound = best.get();
+					if(bound != Long.MIN_VALUE){
+						alpha = (index < packedIndex(bound)) ? packedValue(bound) - 1 : packedValue(bound);
+					}
+					state.applyTrustedMove(successors.get(index));
+					int value = search.rootValue(state, depthLimit, Integer.MIN_VALUE, alpha, Integer.MAX_VALUE);
+					if(value > alpha){
+						// The value is exact: offer it as the new best
+						long result = packRoot(value, index);
+						long current = best.get();
+						while(result > current && !best.compareAndSet(current, result)){
+							current = best.get();
+						}
+					}
+				}
+			});
+		}
+		rootPool.invoke(new RecursiveAction(){
+			protected void compute(){
+				invokeAll(tasks);
 			}
+		});
+		return successors.get(packedIndex(best.get()));
+	}
 
-			//Possible cutoff 
-			if(alpha >= beta){
-				return beta;
-			}
-		}
-		return alpha; 
+	// A root result packed so that a better one (higher value, or equal value and earlier move) is a larger long
+	static long packRoot(int value, int index){
+		return ((long)value << 32) | (0xffffffffL - index);
+	}
+
+	static int packedValue(long packed){
+		return (int)(packed >> 32);
 	}
 
-	protected int minValue(GameState g, int depth, int depthLimit, int alpha, int beta){
-		// Depth/terminal cutoff 
-		if(g.isTerminal() || depth == depthLimit){
-			return e(g);
+	static int packedIndex(long packed){
+		return (int)(0xffffffffL - (packed & 0xffffffffL));
+	}
+
+	// Returns the value of a move from the root, now applied to state, or at most bestValue (the best
+	// value of the moves searched before it) if the move is no better. Every root move gets an exact value
+	// unless principal variation search is on
+	protected int rootValue(GameState state, int depthLimit, int bestValue){
+		return rootValue(state, depthLimit, bestValue, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	// As above, searching within the window (alpha, beta): values outside it are only bounds
+	protected int rootValue(final GameState state, final int depthLimit, final int bestValue, final int alpha, final int beta){
+		if(splitPool == null){
+			return search().rootValue(state, depthLimit, bestValue, alpha, beta);
 		}
 
-		// Generate successors
-		ArrayList<Move> successors = g.getPossibleMoves();
-		for(int i=0; i<successors.size(); i++){
-			// Evaluate this successor
-			GameState result = g.applyMove(successors.get(i));
-			int value = maxValue(result, depth+1, depthLimit, alpha, beta);
-			
-			// Update alpha 
-			if(value < beta){
-				beta = value;
+		// Run the search in the split pool, so its nodes can be split between the pool's threads
+		return splitPool.invoke(new RecursiveTask<Integer>(){
+			protected Integer compute(){
+				return search().rootValue(state, depthLimit, bestValue, alpha, beta);
 			}
+		});
+	}
 
-			//Possible cutoff 
-			if(beta <= alpha){
-				return alpha;
-			}
+	// Returns the search this agent's moves are found with, set up with its current options
+	protected NegamaxSearch search(){
+		if(search == null){
+			search = new NegamaxSearch(this);
 		}
-		return beta; 
+		return search;
 	}
 
 	// Static evaluation function 
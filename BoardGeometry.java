@@ -0,0 +1,196 @@
+// BoardGeometry.java
+// The dimensions of a board and the tables that depend only on them, shared by every
+// GameState played on a board of that size
+
+import java.util.HashMap;
+import java.util.Random;
+
+class BoardGeometry{
+
+	final static public int MIN_SIZE = 2;
+	final static public int MAX_SIZE = Move.COORDINATE_MASK + 1; // Largest row / column a packed move can hold
+
+	final public int rows;
+	final public int cols;
+	final public int numSquares; // Square (row, col) is bit row*cols + col of a multi-word bitboard
+	final public int words; // Longs per player in a bitboard
+	final public int maxJumps; // Longest possible multi-jump
+	final public int maxMoves; // Upper bound on the number of moves in any position
+
+	// directionStep[k] is how far a square index moves for one square in direction k; canJump[k] is the 
+	// bitboard of squares from which a jump in direction k lands on the board
+	final int[] directionStep;
+	final long[][] canJump;
+
+	// Jump rays: rays[square*NUM_DIRECTIONS + k] lists, for each jump a piece on square could make in 
+	// direction k while staying on the board, the square it jumps over then the square it lands on. 
+	// So the i-th jump (from 1) jumps over ray[2*i-2] and lands on ray[2*i-1]
+	final int[][] rays;
+
+	// Zobrist keys for each (player, square)
+	final long[][] zobristPiece;
+
+	// The board symmetries that keep every square the same colour, and so map each player's pieces
+	// onto squares that player can own: symmetrySquare[s][square] is the image of square under
+	// symmetry s, symmetryDirection[s][k] the image of direction k, inverseSymmetry[s] undoes s.
+	// Symmetry 0 is always the identity
+	final public int numSymmetries;
+	final int[][] symmetrySquare;
+	final int[][] symmetryDirection;
+	final int[] inverseSymmetry;
+
+	// The candidate symmetries: the dihedral group of the rectangle (and of the square, for square boards)
+	final static int IDENTITY = 0;
+	final static int ROTATE_180 = 1;
+	final static int FLIP_ROWS = 2; // Reflect top to bottom
+	final static int FLIP_COLS = 3; // Reflect left to right
+	final static int TRANSPOSE = 4; // Reflect in the main diagonal (square boards only)
+	final static int ANTI_TRANSPOSE = 5; // Reflect in the other diagonal (square boards only)
+	final static int ROTATE_90 = 6; // Square boards only
+	final static int ROTATE_270 = 7; // Square boards only
+	final static int[] INVERSE = {IDENTITY, ROTATE_180, FLIP_ROWS, FLIP_COLS, TRANSPOSE, ANTI_TRANSPOSE, ROTATE_270, ROTATE_90};
+
+	static HashMap<Long, BoardGeometry> geometries = new HashMap<Long, BoardGeometry>();
+
+	// Returns the (shared) geometry of a rows x cols board
+	public static synchronized BoardGeometry of(int rows, int cols){
+		if(rows < MIN_SIZE || rows > MAX_SIZE || cols < MIN_SIZE || cols > MAX_SIZE){
+			throw new IllegalArgumentException("Board dimensions must be between " + Integer.toString(MIN_SIZE) + " and " + Integer.toString(MAX_SIZE));
+		}
+		Long key = Long.valueOf(rows*(MAX_SIZE+1) + cols);
+		BoardGeometry geometry = geometries.get(key);
+		if(geometry == null){
+			geometry = new BoardGeometry(rows, cols);
+			geometries.put(key, geometry);
+		}
+		return geometry;
+	}
+
+	private BoardGeometry(int _rows, int _cols){
+		rows = _rows;
+		cols = _cols;
+		numSquares = rows*cols;
+		words = (numSquares + 63)/64;
+		maxJumps = (Math.max(rows, cols) - 1)/2;
+		// Every piece of one player jumping every possible distance in every direction, or removing itself
+		int maxPieces = (numSquares + 1)/2;
+		maxMoves = Math.max(maxPieces, maxPieces*GameState.NUM_DIRECTIONS*maxJumps);
+
+		directionStep = new int[GameState.NUM_DIRECTIONS];
+		canJump = new long[GameState.NUM_DIRECTIONS][words];
+		for(int k=0; k<GameState.NUM_DIRECTIONS; k++){
+			int[] direction = GameState.DIRECTIONS[k];
+			directionStep[k] = direction[0]/2*cols + direction[1]/2;
+			for(int i=0; i<rows; i++){
+				for(int j=0; j<cols; j++){
+					if(i + direction[0] >= 0 && i + direction[0] < rows && j + direction[1] >= 0 && j + direction[1] < cols){
+						canJump[k][(i*cols + j) >>> 6] |= 1L << (i*cols + j);
+					}
+				}
+			}
+		}
+		rays = new int[numSquares*GameState.NUM_DIRECTIONS][];
+		for(int i=0; i<rows; i++){
+			for(int j=0; j<cols; j++){
+				for(int k=0; k<GameState.NUM_DIRECTIONS; k++){
+					int[] direction = GameState.DIRECTIONS[k];
+					int numJumps = 0;
+					while(i + (numJumps+1)*direction[0] >= 0 && i + (numJumps+1)*direction[0] < rows 
+							&& j + (numJumps+1)*direction[1] >= 0 && j + (numJumps+1)*direction[1] < cols){
+						numJumps++;
+					}
+					int[] ray = new int[2*numJumps];
+					for(int n=1; n<=numJumps; n++){
+						ray[2*n-2] = (i + (2*n-1)*direction[0]/2)*cols + j + (2*n-1)*direction[1]/2;
+						ray[2*n-1] = (i + n*direction[0])*cols + j + n*direction[1];
+					}
+					rays[(i*cols + j)*GameState.NUM_DIRECTIONS + k] = ray;
+				}
+			}
+		}
+
+		// Fixed seed per board size so hashes are reproducible between runs
+		Random r = new Random(0x4b6f6e616e65L + numSquares*(MAX_SIZE+1) + cols);
+		zobristPiece = new long[2][numSquares];
+		for(int p=0; p<2; p++){
+			for(int i=0; i<numSquares; i++){
+				zobristPiece[p][i] = r.nextLong();
+			}
+		}
+
+		// Keep the candidate symmetries that exist for this shape and preserve every square's colour
+		int numCandidates = (rows == cols) ? INVERSE.length : TRANSPOSE;
+		int[] kept = new int[numCandidates];
+		int numKept = 0;
+		for(int t=0; t<numCandidates; t++){
+			boolean preservesColours = true;
+			for(int i=0; i<rows; i++){
+				for(int j=0; j<cols; j++){
+					int image = image(t, i, j);
+					if((image/cols + image%cols)%2 != (i + j)%2){
+						preservesColours = false;
+					}
+				}
+			}
+			if(preservesColours){
+				kept[numKept++] = t;
+			}
+		}
+		numSymmetries = numKept;
+		symmetrySquare = new int[numSymmetries][numSquares];
+		symmetryDirection = new int[numSymmetries][GameState.NUM_DIRECTIONS];
+		inverseSymmetry = new int[numSymmetries];
+		for(int s=0; s<numSymmetries; s++){
+			for(int i=0; i<rows; i++){
+				for(int j=0; j<cols; j++){
+					symmetrySquare[s][i*cols + j] = image(kept[s], i, j);
+				}
+			}
+			for(int k=0; k<GameState.NUM_DIRECTIONS; k++){
+				// Symmetries are linear, so the image of a direction is the image of its end minus the image of its start
+				int[] origin = imageCoordinates(kept[s], 0, 0);
+				int[] end = imageCoordinates(kept[s], GameState.DIRECTIONS[k][0], GameState.DIRECTIONS[k][1]);
+				for(int l=0; l<GameState.NUM_DIRECTIONS; l++){
+					if(end[0] - origin[0] == GameState.DIRECTIONS[l][0] && end[1] - origin[1] == GameState.DIRECTIONS[l][1]){
+						symmetryDirection[s][k] = l;
+					}
+				}
+			}
+			for(int t=0; t<numSymmetries; t++){
+				if(kept[t] == INVERSE[kept[s]]){
+					inverseSymmetry[s] = t;
+				}
+			}
+		}
+	}
+
+	// Returns the square that (row, col) maps to under candidate symmetry t
+	int image(int t, int row, int col){
+		int[] coordinates = imageCoordinates(t, row, col);
+		return coordinates[0]*cols + coordinates[1];
+	}
+
+	// Returns the coordinates that (row, col) map to under candidate symmetry t
+	int[] imageCoordinates(int t, int row, int col){
+		int lastRow = rows - 1;
+		int lastCol = cols - 1;
+		switch(t){
+			case ROTATE_180:
+				return new int[]{lastRow-row, lastCol-col};
+			case FLIP_ROWS:
+				return new int[]{lastRow-row, col};
+			case FLIP_COLS:
+				return new int[]{row, lastCol-col};
+			case TRANSPOSE:
+				return new int[]{col, row};
+			case ANTI_TRANSPOSE:
+				return new int[]{lastCol-col, lastRow-row};
+			case ROTATE_90:
+				return new int[]{col, lastRow-row};
+			case ROTATE_270:
+				return new int[]{lastCol-col, row};
+			default:
+				return new int[]{row, col};
+		}
+	}
+}
@@ -0,0 +1,199 @@
+// EvaluationFeatures.java
+// The counts the complex scores are built from, kept up to date as moves are applied to and undone
+// from a GameState instead of being recomputed from both players' move lists at every leaf
+
+class EvaluationFeatures{
+
+	// The features, per player: the number of moves, the moves starting on squares no move jumps over
+	// (safe moves), the pieces that can move and that no move jumps over (safe squares), and the pieces
+	// that can move. A player's count of feature f is entry 2*f + player of a counts array
+	final static public int MOBILITY = 0;
+	final static public int SAFE_MOVES = 1;
+	final static public int SAFE_SQUARES = 2;
+	final static public int MOVABLE_SQUARES = 3;
+	final static public int NUM_FEATURES = 4;
+
+	final int cols;
+	final int numSquares;
+
+	// jumps[square*NUM_DIRECTIONS + k] is how many jumps the piece on square can make in direction k
+	// (0 for empty squares); movesAt[square] is their sum, the number of moves starting on square;
+	// attackers[square] is the number of moves, by either player, that jump over square
+	int[] jumps;
+	int[] movesAt;
+	int[] attackers;
+
+	// The totals of the features, as described above
+	int[] counts = new int[2*NUM_FEATURES];
+
+	// Squares whose contribution to the totals has been taken out during the current update
+	int[] touched;
+	int numTouched;
+	boolean[] isTouched;
+
+	// Computes the features of g from scratch; only valid once both players have removed a piece
+	public EvaluationFeatures(GameState g){
+		cols = g.cols;
+		numSquares = g.geometry.numSquares;
+		jumps = new int[numSquares*GameState.NUM_DIRECTIONS];
+		movesAt = new int[numSquares];
+		attackers = new int[numSquares];
+		touched = new int[numSquares];
+		isTouched = new boolean[numSquares];
+		numTouched = 0;
+		for(int square=0; square<numSquares; square++){
+			for(int k=0; k<GameState.NUM_DIRECTIONS; k++){
+				recompute(g, square, k);
+			}
+		}
+		finishUpdate(g);
+	}
+
+	// Returns player's count of feature
+	public int count(int feature, int player){
+		return counts[2*feature + player];
+	}
+
+	// Call before the pieces of jump move m are moved on g's board (whether applying or undoing m)
+	public void beforeMove(GameState g, int m){
+		int start = g.square(Move.startRow(m), Move.startCol(m));
+		int[] ray = g.geometry.rays[start*GameState.NUM_DIRECTIONS + Move.direction(m)];
+		touch(g, start);
+		for(int i=0; i<2*Move.steps(m); i++){
+			touch(g, ray[i]);
+		}
+	}
+
+	// Call after the pieces of jump move m have been moved: recomputes the jumps of every piece 
+	// whose rays may cross a square the move changed 
+	public void afterMove(GameState g, int m){
+		int start = g.square(Move.startRow(m), Move.startCol(m));
+		int[] ray = g.geometry.rays[start*GameState.NUM_DIRECTIONS + Move.direction(m)];
+		recomputeAround(g, start, Move.direction(m));
+		for(int i=0; i<2*Move.steps(m); i++){
+			recomputeAround(g, ray[i], Move.direction(m));
+		}
+		finishUpdate(g);
+	}
+
+	// Recomputes the jumps of the piece on changed, one of the squares changed by a move in direction 
+	// moveDirection, and of every piece whose jumps may reach it 
+	void recomputeAround(GameState g, int changed, int moveDirection){
+		int row = changed/cols;
+		int col = changed%cols;
+		for(int k=0; k<GameState.NUM_DIRECTIONS; k++){
+			recompute(g, changed, k);
+
+			// Walk away from changed against direction k, visiting the pieces whose jumps in direction k 
+			// could pass through it. The squares between such a piece and changed must alternate between
+			// occupied (jumped over) and empty (landed on), counting from the piece, in the board before
+			// the move or after it; a square the move changed could have been either. So the pieces at 
+			// each parity of distance are cut off as soon as that alternation breaks
+			int room;
+			if(k == 0){
+				room = numSquares/cols - 1 - row;
+			} else if(k == 1){
+				room = col;
+			} else if(k == 2){
+				room = row;
+			} else {
+				room = cols - 1 - col;
+			}
+			int step = g.geometry.directionStep[k];
+			boolean oddReachable = true;
+			boolean evenReachable = true;
+			boolean canBeEmpty1 = false; // Whether the squares 1 and 2 back from the current one can be empty
+			boolean canBeEmpty2 = false;
+			boolean canBeOccupied1 = false; // Whether the square 1 back can be occupied
+			for(int d=1; d<=room; d++){
+				// A piece d squares away jumps over the square 1 back and, unless it is the first jump, lands
+				// on the square 2 back
+				boolean reachable = canBeOccupied1 && (d == 2 || canBeEmpty2);
+				if(d%2 == 1){
+					oddReachable = oddReachable && (d == 1 || reachable);
+				} else {
+					evenReachable = evenReachable && reachable;
+				}
+				if(!oddReachable && !evenReachable){
+					break;
+				}
+				int square = changed - d*step;
+				if((d%2 == 1) ? oddReachable : evenReachable){
+					// Across the move's line, changed is the only square on this line that changed. So if 
+					// the piece's jumps were stopped by a jump short of changed, they still are 
+					int old = jumps[square*GameState.NUM_DIRECTIONS + k];
+					if(k%2 == moveDirection%2 || 2*(old+1) >= d){
+						recompute(g, square, k);
+					}
+				}
+				boolean empty = g.isEmpty(square);
+				canBeEmpty2 = canBeEmpty1;
+				canBeEmpty1 = empty || isTouched[square];
+				canBeOccupied1 = !empty || isTouched[square];
+			}
+		}
+	}
+
+	// Recomputes the jumps the piece on square can make in direction k, and the squares they jump over
+	void recompute(GameState g, int square, int k){
+		int old = jumps[square*GameState.NUM_DIRECTIONS + k];
+		int owner = g.owner(square);
+		if(owner == GameState.EMPTY && old == 0){
+			return;
+		}
+		int length = (owner == GameState.EMPTY) ? 0 : g.jumpLength(owner, square, k);
+		if(length == old){
+			return;
+		}
+		int[] ray = g.geometry.rays[square*GameState.NUM_DIRECTIONS + k];
+		touch(g, square);
+		for(int i=1; i<=old; i++){
+			touch(g, ray[2*i-2]);
+			attackers[ray[2*i-2]]--;
+		}
+		for(int i=1; i<=length; i++){
+			touch(g, ray[2*i-2]);
+			attackers[ray[2*i-2]]++;
+		}
+		jumps[square*GameState.NUM_DIRECTIONS + k] = length;
+		movesAt[square] += length - old;
+	}
+
+	// Takes square's contribution out of the totals (once per update) before anything about it changes
+	void touch(GameState g, int square){
+		if(!isTouched[square]){
+			isTouched[square] = true;
+			touched[numTouched++] = square;
+			contribute(g.owner(square), square, -1);
+		}
+	}
+
+	// Puts the touched squares' contributions back into the totals now that the update is done
+	void finishUpdate(GameState g){
+		for(int i=0; i<numTouched; i++){
+			int square = touched[i];
+			contribute(g.owner(square), square, 1);
+			isTouched[square] = false;
+		}
+		numTouched = 0;
+	}
+
+	// Adds (sign 1) or removes (sign -1) the contribution of square, owned by owner, to the totals
+	void contribute(int owner, int square, int sign){
+		if(owner == GameState.EMPTY){
+			return;
+		}
+		int moves = movesAt[square];
+		boolean safe = attackers[square] == 0;
+		counts[2*MOBILITY + owner] += sign*moves;
+		if(safe){
+			counts[2*SAFE_MOVES + owner] += sign*moves;
+		}
+		if(moves > 0){
+			counts[2*MOVABLE_SQUARES + owner] += sign;
+			if(safe){
+				counts[2*SAFE_SQUARES + owner] += sign;
+			}
+		}
+	}
+}
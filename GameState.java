@@ -3,71 +3,231 @@
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
 
 class GameState{
 
 	final static public int PLAYER1 = 0;
 	final static public int PLAYER2 = 1;
-	final int EMPTY = 2;
+	final static int EMPTY = 2;
 
 	final static public char[] PLAYER_SYMBOL = {'X', 'O', '.'};
 	final static public int[] OPPOSITE_PLAYER = {PLAYER2, PLAYER1};
 	
-	final static public int BOARD_SIZE = 8;
+	final static public int DEFAULT_BOARD_SIZE = 8;
 
-	final int[] NORTH = {-2, 0};
-	final int[] EAST = {0, 2};
-	final int[] SOUTH = {2, 0};
-	final int[] WEST = {0, -2};
-	final int[][] DIRECTIONS = {NORTH, EAST, SOUTH, WEST};
-	final int NUM_DIRECTIONS = 4;
+	final static int[] NORTH = {-2, 0};
+	final static int[] EAST = {0, 2};
+	final static int[] SOUTH = {2, 0};
+	final static int[] WEST = {0, -2};
+	final static int[][] DIRECTIONS = {NORTH, EAST, SOUTH, WEST};
+	final static int NUM_DIRECTIONS = 4;
 
 	final boolean verbose = false; 
 
-	int[][] board;
+	// Zobrist keys for the side to move and, per player, for having removed a piece. The keys for 
+	// pieces depend on the board size and live in BoardGeometry. A position's hash is the XOR of 
+	// the keys that apply to it
+	final static long ZOBRIST_TURN;
+	final static long[] ZOBRIST_REMOVED = new long[2];
+	static {
+		// Fixed seed so hashes are reproducible between runs
+		Random r = new Random(0x4b6f6e616e65L);
+		ZOBRIST_REMOVED[PLAYER1] = r.nextLong();
+		ZOBRIST_REMOVED[PLAYER2] = r.nextLong();
+		ZOBRIST_TURN = r.nextLong();
+	}
+
+	// Symmetry 0 is the identity; the others depend on the board's shape (see BoardGeometry)
+	final static public int IDENTITY = 0;
+
+	final BoardGeometry geometry;
+	final int rows;
+	final int cols;
+	final int words; // Longs per player in pieces 
+
+	long[] pieces; // Occupancy bitboards: player p's square i is bit i%64 of pieces[p*words + i/64]
 	int turn;
 	boolean[] playersHaveRemoved; 
-
-	// A constructor that generates an initial game state 
+	long[] hashes; // Zobrist hash of the position's image under each symmetry, updated as moves are applied and undone 
+
+	// How many of hashes are kept up to date: just the identity's, unless symmetry hashes are turned on. 
+	// The others cost an extra XOR per symmetry on every piece a move changes, so they are only worth 
+	// keeping while something looks positions up by their canonical hash, e.g. a search with a table 
+	int numHashes = 1;
+
+	// Moves available to each player in this position, generated at most once and discarded 
+	// whenever the position changes. A count of UNKNOWN means not generated yet 
+	final static int UNKNOWN = -1;
+	int[][] moveCache = new int[2][];
+	int[] numCachedMoves = {UNKNOWN, UNKNOWN};
+	int[] moveCounts = {UNKNOWN, UNKNOWN}; // Known even when only counted, not generated 
+	boolean[] knownHasMove = {false, false}; // Whether a move is known to exist, even if not yet counted 
+
+	// The evaluation features, when maintained incrementally: built the first time they are asked for 
+	// once both players have removed a piece and then updated by every move applied or undone. Copies 
+	// start without them. Off by default, since on small boards updating them on every move costs more 
+	// than computing them afresh at each leaf (see GameStateBenchmark) 
+	boolean maintainFeatures = false;
+	EvaluationFeatures features = null;
+
+	// Scratch space for computeFeatureCounts: its counts, and bitboards of each player's movable pieces 
+	// and of the endangered squares. Allocated on first use 
+	int[] kernelCounts = null;
+	long[] kernelBoards = null;
+
+	// A constructor that generates an initial game state on the standard board
 	public GameState(){
-		board = setupInitialBoard();
+		this(DEFAULT_BOARD_SIZE, DEFAULT_BOARD_SIZE);
+	}
+
+	// A constructor that generates an initial game state on a rows x cols board
+	public GameState(int _rows, int _cols){
+		geometry = BoardGeometry.of(_rows, _cols);
+		rows = geometry.rows;
+		cols = geometry.cols;
+		words = geometry.words;
+		pieces = setupInitialBoard();
 		turn = PLAYER1; 
 		playersHaveRemoved = new boolean[2];
 		playersHaveRemoved[PLAYER1] = false;
 		playersHaveRemoved[PLAYER2] = false;
+		hashes = new long[geometry.numSymmetries];
+		hashes[IDENTITY] = computeHash(IDENTITY);
 		return;
 	}
 
-	// A constructor that generates a deep copy of the provided game state 
-	private GameState(GameState copied){
-		board = new int[BOARD_SIZE][BOARD_SIZE];
-		for(int i=0; i<BOARD_SIZE; i++){
-			for(int j=0; j<BOARD_SIZE; j++){
-				board[i][j] = copied.board[i][j];
+	// A constructor that sets up the position described by notation (see toNotation): the rows of the 
+	// board from the top, separated by '/', each square X, O or '.', then a space and the side to move. 
+	// A player has removed a piece if they have fewer pieces than they started with (no piece can be 
+	// captured before both players have removed one) 
+	public GameState(String notation){
+		String[] parts = notation.trim().split("\\s+");
+		if(parts.length != 2){
+			throw new IllegalArgumentException("Position must be a board and a side to move");
+		}
+		String[] boardRows = parts[0].split("/");
+		geometry = BoardGeometry.of(boardRows.length, boardRows[0].length());
+		rows = geometry.rows;
+		cols = geometry.cols;
+		words = geometry.words;
+		pieces = new long[2*words];
+		int[] initialPieces = new int[2];
+		for(int i=0; i<rows; i++){
+			if(boardRows[i].length() != cols){
+				throw new IllegalArgumentException("Row " + Integer.toString(i+1) + " has the wrong length");
+			}
+			for(int j=0; j<cols; j++){
+				int parity = (i + j)%2;
+				initialPieces[parity]++;
+				char symbol = boardRows[i].charAt(j);
+				if(symbol == '.'){
+					continue;
+				}
+				if(symbol != PLAYER_SYMBOL[parity]){
+					throw new IllegalArgumentException("Square <" + Integer.toString(i) + "," + Integer.toString(j) + "> cannot hold " + symbol);
+				}
+				pieces[parity*words + (square(i, j) >>> 6)] |= 1L << square(i, j);
 			}
 		}
+		if(parts[1].equals(Character.toString(PLAYER_SYMBOL[PLAYER1]))){
+			turn = PLAYER1;
+		} else if(parts[1].equals(Character.toString(PLAYER_SYMBOL[PLAYER2]))){
+			turn = PLAYER2;
+		} else {
+			throw new IllegalArgumentException("Side to move must be " + PLAYER_SYMBOL[PLAYER1] + " or " + PLAYER_SYMBOL[PLAYER2]);
+		}
+		playersHaveRemoved = new boolean[2];
+		playersHaveRemoved[PLAYER1] = numPieces(PLAYER1) < initialPieces[PLAYER1];
+		playersHaveRemoved[PLAYER2] = numPieces(PLAYER2) < initialPieces[PLAYER2];
+		hashes = new long[geometry.numSymmetries];
+		hashes[IDENTITY] = computeHash(IDENTITY);
+		return;
+	}
+
+	// A constructor that generates a deep copy of the provided game state 
+	private GameState(GameState copied){
+		geometry = copied.geometry;
+		rows = copied.rows;
+		cols = copied.cols;
+		words = copied.words;
+		pieces = copied.pieces.clone();
 		turn = copied.turn;
+		maintainFeatures = copied.maintainFeatures;
 		playersHaveRemoved = new boolean[2];
 		playersHaveRemoved[PLAYER1] = copied.playersHaveRemoved[PLAYER1];
 		playersHaveRemoved[PLAYER2] = copied.playersHaveRemoved[PLAYER2];
+		hashes = copied.hashes.clone();
+		numHashes = copied.numHashes;
 		return;
 	}
 
-	// Generates and returns an int array representing the initial board 
-	public int[][] setupInitialBoard(){
-		int[][] board = new int[BOARD_SIZE][BOARD_SIZE];
-		for (int i=0; i<BOARD_SIZE; i++){
-			for(int j=0; j<BOARD_SIZE; j++){
+	// Returns a deep copy of this game state, e.g. for a search to apply and undo moves on 
+	public GameState copy(){
+		return new GameState(this);
+	}
+
+	// Generates and returns the occupancy bitboards of the initial board
+	public long[] setupInitialBoard(){
+		long[] pieces = new long[2*words];
+		for (int i=0; i<rows; i++){
+			for(int j=0; j<cols; j++){
 				int parity = (i + j)%2;
-				board[i][j] = parity;
+				int square = square(i, j);
+				pieces[parity*words + (square >>> 6)] |= 1L << square;
 			}
 		}
-		return board; 
+		return pieces; 
+	}
+
+	public int rows(){
+		return rows;
+	}
+
+	public int cols(){
+		return cols;
+	}
+
+	// Upper bound on the number of moves from any position on this board: the size a move buffer needs 
+	public int maxMoves(){
+		return geometry.maxMoves;
+	}
+
+	// Returns the bit index of the square (row, col)
+	public int square(int row, int col){
+		return row*cols + col;
+	}
+
+	// Returns true if player has a piece on square 
+	boolean occupied(int player, int square){
+		return (pieces[player*words + (square >>> 6)] & (1L << square)) != 0;
+	}
+
+	// Returns PLAYER1, PLAYER2 or EMPTY for the given square index 
+	int owner(int square){
+		if(occupied(PLAYER1, square)){
+			return PLAYER1;
+		}
+		if(occupied(PLAYER2, square)){
+			return PLAYER2;
+		}
+		return EMPTY;
+	}
+
+	// Returns true if nobody has a piece on square 
+	boolean isEmpty(int square){
+		return ((pieces[square >>> 6] | pieces[words + (square >>> 6)]) & (1L << square)) == 0;
+	}
+
+	// Returns PLAYER1, PLAYER2 or EMPTY for the given square 
+	public int pieceAt(int row, int col){
+		return owner(square(row, col));
 	}
 
 	// Returns true if the current player cannot make a move 
 	public boolean isTerminal(){
-		return getPossibleMoves().size() == 0;
+		return !hasAnyMove(turn);
 	}
 
 	// Return winner
@@ -80,68 +240,206 @@ class GameState{
 
 	// Returns an arraylist containing all possible moves from this gamestate
 	public ArrayList<Move> getPossibleMoves(){
-		ArrayList<Move> possibleMoves = new ArrayList<Move>();
-
-		// If we have not removed a piece yet, we must remove a piece
-		if(!playersHaveRemoved[turn]){
-			// Iterate over our pieces 
-			for(int i=0; i<BOARD_SIZE; i++){
-				for(int j=0; j<BOARD_SIZE; j++){
-					if(board[i][j] == turn){
-						possibleMoves.add(new Move(new int[]{i,j}, turn));
+		int[] moves = cachedMoves(turn);
+		int numMoves = numCachedMoves[turn];
+		ArrayList<Move> possibleMoves = new ArrayList<Move>(numMoves);
+		for(int i=0; i<numMoves; i++){
+			possibleMoves.add(new Move(moves[i]));
+		}
+		return possibleMoves;  
+	}
+
+	// Writes all possible moves from this gamestate, packed, into the start of the provided buffer 
+	// (which must hold at least maxMoves()) and returns how many there are. Does not allocate. 
+	public int getPossibleMoves(int[] moves){
+		int[] cached = cachedMoves(turn);
+		System.arraycopy(cached, 0, moves, 0, numCachedMoves[turn]);
+		return numCachedMoves[turn];
+	}
+
+	// Returns the cache of moves available to player in this position (the first 
+	// numCachedMoves[player] entries), generating them if this position has not yet done so
+	int[] cachedMoves(int player){
+		if(numCachedMoves[player] == UNKNOWN){
+			if(moveCache[player] == null){
+				moveCache[player] = new int[geometry.maxMoves];
+			}
+			numCachedMoves[player] = generateMoves(player, moveCache[player]);
+			moveCounts[player] = numCachedMoves[player];
+		}
+		return moveCache[player];
+	}
+
+	// Forgets cached information about this position; must be called whenever it changes 
+	void invalidateCaches(){
+		numCachedMoves[PLAYER1] = UNKNOWN;
+		numCachedMoves[PLAYER2] = UNKNOWN;
+		moveCounts[PLAYER1] = UNKNOWN;
+		moveCounts[PLAYER2] = UNKNOWN;
+		knownHasMove[PLAYER1] = false;
+		knownHasMove[PLAYER2] = false;
+	}
+
+	// Returns the 64 squares of player's bitboard starting at square index first (which may be off 
+	// the board; squares off the board are empty) 
+	long bitsFrom(int player, int first){
+		if(words == 1){
+			// Boards of up to 64 squares: a plain shift
+			long own = pieces[player];
+			if(first >= 0){
+				return (first < 64) ? own >>> first : 0;
+			}
+			return (first > -64) ? own << -first : 0;
+		}
+		int w = first >> 6;
+		int b = first & 63;
+		long low = (w >= 0 && w < words) ? pieces[player*words + w] : 0;
+		if(b == 0){
+			return low;
+		}
+		long high = (w+1 >= 0 && w+1 < words) ? pieces[player*words + w+1] : 0;
+		return (low >>> b) | (high << (64-b));
+	}
+
+	// Returns word w of the bitboard of player's pieces that can jump at least once in direction k:
+	// over an enemy piece onto an empty square on the board 
+	long jumpersWord(int player, int k, int w){
+		int step = geometry.directionStep[k];
+		int first = 64*w;
+		long enemy = bitsFrom(OPPOSITE_PLAYER[player], first + step);
+		long empty = ~(bitsFrom(PLAYER1, first + 2*step) | bitsFrom(PLAYER2, first + 2*step));
+		return pieces[player*words + w] & geometry.canJump[k][w] & enemy & empty;
+	}
+
+	// Returns the number of jumps the piece on square can make in direction k: each one over 
+	// an enemy piece onto an empty square. The innermost loop of move generation, so it reads the 
+	// bitboards directly rather than through occupied and isEmpty 
+	int jumpLength(int player, int square, int k){
+		int[] ray = geometry.rays[square*NUM_DIRECTIONS + k];
+		int enemy = OPPOSITE_PLAYER[player]*words;
+		int n = 0;
+		while(2*n < ray.length){
+			int jumped = ray[2*n];
+			int landing = ray[2*n+1];
+			if((pieces[enemy + (jumped >>> 6)] & (1L << jumped)) == 0 
+					|| ((pieces[landing >>> 6] | pieces[words + (landing >>> 6)]) & (1L << landing)) != 0){
+				break;
+			}
+			n++;
+		}
+		return n;
+	}
+
+	// Returns the number of moves player could make in this position, were it their turn, 
+	// without generating them 
+	public int countMoves(int player){
+		if(moveCounts[player] != UNKNOWN){
+			return moveCounts[player];
+		}
+		if(features != null){
+			return features.count(EvaluationFeatures.MOBILITY, player);
+		}
+		int count = 0;
+		if(!playersHaveRemoved[player]){
+			// One removal move per piece
+			count = numPieces(player);
+		} else {
+			// Each piece that can jump can stop after any of its jumps in that direction 
+			for(int w=0; w<words; w++){
+				for(int k=0; k<NUM_DIRECTIONS; k++){
+					long jumpers = jumpersWord(player, k, w);
+					while(jumpers != 0){
+						count += jumpLength(player, 64*w + Long.numberOfTrailingZeros(jumpers), k);
+						jumpers &= jumpers - 1;
 					}
 				}
 			}
-			return possibleMoves;
-		}
-
-		// Iterate over locations on board to find our pieces
-		for(int i=0; i<BOARD_SIZE; i++){
-			for(int j=0; j<BOARD_SIZE; j++){
-				// Our piece at i,j
-				if(board[i][j] == turn){
-					//Pick a direction
-					for(int k=0; k<NUM_DIRECTIONS; k++){
-						int[] direction = DIRECTIONS[k];
-
-						// Construct single-step move in that direction 
-						ArrayList<int[]> coordinates = new ArrayList<int[]>();
-						coordinates.add(new int[]{i,j});
-						int[] destination = applyDirection(new int[]{i,j}, direction);
-						// Make sure coordinates exist 
-						if (coordinatesExist(destination)){
-							coordinates.add(destination);
-							
-							// Is that move valid?
-							Move moveToTest = new Move(1, coordinates, turn);
-							int steps = 2;
-							while (isValid(moveToTest)){
-								// If move is valid, add it to the possible moves 
-								possibleMoves.add(moveToTest);
-
-								// .. and construct a new move to test by taking another step in the same direction
-								destination = applyDirection(destination, direction);
-								if(!coordinatesExist(destination)){
-									break;
-								}
-								coordinates = (ArrayList<int[]>)coordinates.clone();
-								coordinates.add(destination);
-								moveToTest = new Move(steps, coordinates, turn);
-								steps++; 
-							}
+		}
+		moveCounts[player] = count;
+		return count;
+	}
+
+	// Returns true if player could make at least one move in this position, were it their turn. 
+	// Stops at the first piece found that can jump. Either answer is cached until the position changes 
+	public boolean hasAnyMove(int player){
+		if(knownHasMove[player]){
+			return true;
+		}
+		if(moveCounts[player] != UNKNOWN){
+			return moveCounts[player] > 0;
+		}
+		if(features != null){
+			return features.count(EvaluationFeatures.MOBILITY, player) > 0;
+		}
+		boolean found = false;
+		if(!playersHaveRemoved[player]){
+			found = numPieces(player) > 0;
+		} else {
+			for(int w=0; w<words && !found; w++){
+				for(int k=0; k<NUM_DIRECTIONS && !found; k++){
+					found = jumpersWord(player, k, w) != 0;
+				}
+			}
+		}
+		if(found){
+			knownHasMove[player] = true;
+		} else {
+			moveCounts[player] = 0;
+		}
+		return found;
+	}
+
+	// Writes all moves player could make in this position, were it their turn, into moves 
+	// and returns how many there are, in board order. Only visits pieces that can move 
+	int generateMoves(int player, int[] moves){
+		int numMoves = 0;
+		for(int w=0; w<words; w++){
+			// If we have not removed a piece yet, we must remove a piece
+			if(!playersHaveRemoved[player]){
+				long own = pieces[player*words + w];
+				while(own != 0){
+					int square = 64*w + Long.numberOfTrailingZeros(own);
+					moves[numMoves++] = Move.encodeRemoval(square/cols, square%cols, player);
+					own &= own - 1;
+				}
+				continue;
+			}
+
+			// Otherwise each piece can stop after any of its jumps in each direction
+			long north = jumpersWord(player, 0, w);
+			long east = jumpersWord(player, 1, w);
+			long south = jumpersWord(player, 2, w);
+			long west = jumpersWord(player, 3, w);
+			long jumpers = north | east | south | west;
+			while(jumpers != 0){
+				int bit = Long.numberOfTrailingZeros(jumpers);
+				jumpers &= jumpers - 1;
+				int square = 64*w + bit;
+				int row = square/cols;
+				int col = square%cols;
+				long directions = ((north >>> bit) & 1) | (((east >>> bit) & 1) << 1) 
+					| (((south >>> bit) & 1) << 2) | (((west >>> bit) & 1) << 3);
+				for(int k=0; k<NUM_DIRECTIONS; k++){
+					if((directions & (1L << k)) != 0){
+						int length = jumpLength(player, square, k);
+						for(int n=1; n<=length; n++){
+							moves[numMoves++] = Move.encode(row, col, k, n, player);
 						}
 					}
 				}
 			}
 		}
-		return possibleMoves;  
+		return numMoves;
 	}
 
 	// Returns a list of moves the non-current player could make, were it their turn
 	public ArrayList<Move> getPossibleOtherMoves(){
-		turn = OPPOSITE_PLAYER[turn];
-		ArrayList<Move> enemyMoves = getPossibleMoves();
-		turn = OPPOSITE_PLAYER[turn];
+		int other = OPPOSITE_PLAYER[turn];
+		int[] moves = cachedMoves(other);
+		ArrayList<Move> enemyMoves = new ArrayList<Move>(numCachedMoves[other]);
+		for(int i=0; i<numCachedMoves[other]; i++){
+			enemyMoves.add(new Move(moves[i]));
+		}
 		return enemyMoves;
 	}
 
@@ -163,11 +461,11 @@ class GameState{
 	// As above, but can be provided with moves already generated isntead of re-calculating them
 	public boolean[][][] pieceInfo(ArrayList<Move> _ourMoves, ArrayList<Move> _enemyMoves){
 		
-		boolean[][] endangered = new boolean[BOARD_SIZE][BOARD_SIZE];
-		boolean[][] movable = new boolean[BOARD_SIZE][BOARD_SIZE];
+		boolean[][] endangered = new boolean[rows][cols];
+		boolean[][] movable = new boolean[rows][cols];
 
-		for(int i=0; i<BOARD_SIZE; i++){
-			for(int j=0; j<BOARD_SIZE; j++){
+		for(int i=0; i<rows; i++){
+			for(int j=0; j<cols; j++){
 				endangered[i][j] = false;
 				movable[i][j] = false;
 			}
@@ -190,9 +488,8 @@ class GameState{
 			movable[m.startRow()][m.startCol()] = true;
 
 			// Set jumped-over pieces to endangered
-			ArrayList<int[]> jumpedOver = m.jumpedOver();
-			for(int j=0; j<jumpedOver.size(); j++){
-				endangered[jumpedOver.get(j)[0]][jumpedOver.get(j)[1]] = true;
+			for(int j=1; j<=m.steps(); j++){
+				endangered[Move.jumpedRow(m.code(), j)][Move.jumpedCol(m.code(), j)] = true;
 			}
 
 		}
@@ -202,90 +499,65 @@ class GameState{
 
 	// Returns true if the move m can be made in the current gamestate 
 	public boolean isValid(Move m){
+		return isValid(m.code());
+	}
+
+	// As above, for a packed move 
+	public boolean isValid(int m){
 		// Player must match current turn
-		if (m.player() != turn){
+		if (Move.player(m) != turn){
 			if(verbose){
 				System.out.println("Move rejected: wrong player");
 			}
 			return false;
 		}
 		// If player has not yet removed a piece, they must remove a piece 
-		if (!playersHaveRemoved[turn] && !m.isRemoval()){
+		if (!playersHaveRemoved[turn] && !Move.isRemoval(m)){
 			if(verbose){
 				System.out.println("Move rejected: player must remove a piece first");
 			}			
 			return false; 
 		}
-		if(playersHaveRemoved[turn] && m.isRemoval()){
+		if(playersHaveRemoved[turn] && Move.isRemoval(m)){
 			if(verbose){
 				System.out.println("Move rejected: player cannot remove multiple pieces");
 			}			
 			return false; 			
 		}
 		// Initial coordinates must be on board 
-		if (!coordinatesExist(m.startCoordinates())){
+		if (!coordinatesExist(Move.startRow(m), Move.startCol(m))){
 			if(verbose){
 				System.out.println("Move rejected: initial coordinates are off board");
 			}			
 			return false; 
 		}
 		// Initial coordinates must belong to player's own piece
-		if(board[m.startRow()][m.startCol()] != turn){
+		if(pieceAt(Move.startRow(m), Move.startCol(m)) != turn){
 			if(verbose){
 				System.out.println("Move rejected: initial coordinates are not your piece");
 			}		
 			return false; 
 		}
 
-		// If it is a regular non-removal move, determine movement vector
-		int[] vector = new int[]{-1,-1};
-		if (!m.isRemoval()){
-			int[] firstDestination = m.nthStep(1);
-			vector[0] = firstDestination[0] - m.startRow();
-			vector[1] = firstDestination[1] - m.startCol(); 
-
-			if(!Arrays.equals(vector, NORTH) && !Arrays.equals(vector, EAST) && !Arrays.equals(vector, SOUTH) && !Arrays.equals(vector, WEST)){
-				if(verbose){
-					System.out.println("Move rejected: vector " + Integer.toString(vector[0]) + "," + Integer.toString(vector[1]) + " is invalid");
-				}
-				return false; 
-			}
-		}
-
-		// If there are more coordinates... 
-		for(int i=1; i<m.steps()+1; i++){
-			int[] ithCoordinate = m.nthStep(i);
-			// they must be on the board
-			if (!coordinatesExist(ithCoordinate)){
+		// The packed encoding guarantees every step is a jump in the same direction, so 
+		// for each step... 
+		for(int i=1; i<Move.steps(m)+1; i++){
+			// the landing square must be on the board
+			if (!coordinatesExist(Move.nthRow(m, i), Move.nthCol(m, i))){
 				if(verbose){
 					System.out.println("Move rejected: " + Integer.toString(i) + "th step is off the board");
 				}		
 				return false; 
 			}
 			// and empty 
-			if (board[ithCoordinate[0]][ithCoordinate[1]] != EMPTY){
+			if (pieceAt(Move.nthRow(m, i), Move.nthCol(m, i)) != EMPTY){
 				if(verbose){
 					System.out.println("Move rejected: " + Integer.toString(i) + "th step is not empty");
 				}	
 				return false;
 			}
-			// Any steps after the first must be in the same direction
-			int[] lastCoordinate = m.nthStep(i-1);
-			int[] newVector = new int[2];
-			int[] between = new int[2];
-			newVector[0] = ithCoordinate[0] - lastCoordinate[0];
-			newVector[1] = ithCoordinate[1] - lastCoordinate[1];
-			between[0] = (ithCoordinate[0] + lastCoordinate[0])/2;
-			between[1] = (ithCoordinate[1] + lastCoordinate[1])/2;
-			if(!Arrays.equals(newVector, vector)){
-				if(verbose){
-					System.out.println("Move rejected: " + Integer.toString(i) + "th step is in wrong direction");
-				}	
-				return false; 
-			}
-
-			// and the spaces between them must contain enemy pieces
-			if(board[between[0]][between[1]] != OPPOSITE_PLAYER[turn]){
+			// and the space jumped over must contain an enemy piece
+			if(pieceAt(Move.jumpedRow(m, i), Move.jumpedCol(m, i)) != OPPOSITE_PLAYER[turn]){
 				if(verbose){
 					System.out.println("Move rejected: " + Integer.toString(i) + "th step does not have an enemy piece between");
 				}	
@@ -298,13 +570,18 @@ class GameState{
 	// If the move m is valid, return a gamestate representing the result of applying that move to this state
 	// Otherwise return null 
 	public GameState applyMove(Move m){
+		return applyMove(m.code());
+	}
+
+	// As above, for a packed move 
+	public GameState applyMove(int m){
 		if(!isValid(m)){
 			return null; 
 		}
 
 		// make a copy
 		GameState result = new GameState(this);
-		result.applyMoveInPlace(m);
+		result.applyTrustedMove(m);
 
 		return result;
 	}
@@ -312,28 +589,115 @@ class GameState{
 	// If the move m is valid, apply it to the current gamestate (without generating a new one)
 	// and return true. Otherwise return false 
 	public boolean applyMoveInPlace(Move m){
+		return applyMoveInPlace(m.code());
+	}
+
+	// As above, for a packed move 
+	public boolean applyMoveInPlace(int m){
 		if(!isValid(m)){
 			return false;
 		}
+		applyTrustedMove(m);
+		return true; 
+	}
+
+	// Applies m to the current gamestate without validating it. Only for moves that came from 
+	// getPossibleMoves on this exact gamestate; anything else (e.g. a human's input) should go
+	// through applyMoveInPlace. Run with assertions enabled (java -ea) to validate anyway. 
+	public void applyTrustedMove(Move m){
+		applyTrustedMove(m.code());
+	}
+
+	// As above, for a packed move 
+	public void applyTrustedMove(int m){
+		assert isValid(m) : "Trusted move " + new Move(m) + " is not valid in\n" + this;
+		invalidateCaches();
+
 		// If it is a removal, remove piece & update playersHaveRemoved 
-		if(m.isRemoval()){
-			board[m.startRow()][m.startCol()] = EMPTY;
+		if(Move.isRemoval(m)){
+			togglePiece(turn, square(Move.startRow(m), Move.startCol(m)));
 			playersHaveRemoved[turn] = true;
+			features = null;
+			toggleKey(ZOBRIST_REMOVED[turn]);
 		} else {
 			// If it is a move(s), move jumping piece
-			board[m.startRow()][m.startCol()] = EMPTY;
-			board[m.endRow()][m.endCol()] = turn; 
+			int steps = Move.steps(m);
+			if(features != null){
+				features.beforeMove(this, m);
+			}
+			int start = square(Move.startRow(m), Move.startCol(m));
+			int[] ray = geometry.rays[start*NUM_DIRECTIONS + Move.direction(m)];
+			togglePiece(turn, start);
+			togglePiece(turn, ray[2*steps-1]);
 
 			// And remove jumped-over pieces
-			ArrayList<int[]> jumpedOver = m.jumpedOver();
-			for(int i=0; i<jumpedOver.size(); i++){
-				board[jumpedOver.get(i)[0]][jumpedOver.get(i)[1]] = EMPTY;
+			for(int i=1; i<=steps; i++){
+				togglePiece(OPPOSITE_PLAYER[turn], ray[2*i-2]);
+			}
+			if(features != null){
+				features.afterMove(this, m);
 			}
 		}
 		// Change turn 
 		turn = OPPOSITE_PLAYER[turn];
+		toggleKey(ZOBRIST_TURN);
+	}
 
-		return true; 
+	// Reverses applyMoveInPlace(m) or applyTrustedMove(m), which must be the last move applied to this gamestate:
+	// restores the pieces, the turn, and whether the mover had removed a piece
+	public void undoMove(Move m){
+		undoMove(m.code());
+	}
+
+	// As above, for a packed move 
+	public void undoMove(int m){
+		invalidateCaches();
+
+		// Give the turn back to the mover 
+		turn = OPPOSITE_PLAYER[turn];
+		toggleKey(ZOBRIST_TURN);
+
+		// If it was a removal, put the piece back; the mover could not have removed before 
+		if(Move.isRemoval(m)){
+			togglePiece(turn, square(Move.startRow(m), Move.startCol(m)));
+			playersHaveRemoved[turn] = false;
+			features = null;
+			toggleKey(ZOBRIST_REMOVED[turn]);
+		} else {
+			// Move the jumping piece back
+			int steps = Move.steps(m);
+			if(features != null){
+				features.beforeMove(this, m);
+			}
+			int start = square(Move.startRow(m), Move.startCol(m));
+			int[] ray = geometry.rays[start*NUM_DIRECTIONS + Move.direction(m)];
+			togglePiece(turn, start);
+			togglePiece(turn, ray[2*steps-1]);
+
+			// And restore jumped-over pieces
+			for(int i=1; i<=steps; i++){
+				togglePiece(OPPOSITE_PLAYER[turn], ray[2*i-2]);
+			}
+			if(features != null){
+				features.afterMove(this, m);
+			}
+		}
+	}
+
+	// Adds player's piece to square if it is empty, or removes it if it is there, 
+	// updating the hash of every symmetric image of the position that is kept up to date 
+	void togglePiece(int player, int square){
+		pieces[player*words + (square >>> 6)] ^= 1L << square;
+		for(int s=0; s<numHashes; s++){
+			hashes[s] ^= geometry.zobristPiece[player][geometry.symmetrySquare[s][square]];
+		}
+	}
+
+	// XORs a key that does not depend on the board (turn, removals) into every hash kept up to date 
+	void toggleKey(long key){
+		for(int s=0; s<numHashes; s++){
+			hashes[s] ^= key;
+		}
 	}
 
 	// Static utility function: 
@@ -342,10 +706,13 @@ class GameState{
 		return new int[]{coordinates[0] + direction[0], coordinates[1] + direction[1]};
 	}
 
-	// Static utility function: 
 	// Returns true if coordinates are within the board 
-	public static boolean coordinatesExist(int[] coordinates){
-		return (coordinates[0] >= 0 && coordinates[0] < BOARD_SIZE && coordinates[1] >= 0 && coordinates[1] < BOARD_SIZE);
+	public boolean coordinatesExist(int[] coordinates){
+		return coordinatesExist(coordinates[0], coordinates[1]);
+	}
+
+	public boolean coordinatesExist(int row, int col){
+		return (row >= 0 && row < rows && col >= 0 && col < cols);
 	}
 
 	// Return current turn
@@ -353,32 +720,314 @@ class GameState{
 		return turn;
 	}
 
+	// Returns the Zobrist hash of this position (pieces, side to move and removals)
+	public long hash(){
+		return hashes[IDENTITY];
+	}
+
+	// Returns the hash of this position's image under the given symmetry: kept up to date if symmetry 
+	// hashes are on, otherwise computed from scratch 
+	public long hash(int symmetry){
+		if(symmetry < numHashes){
+			return hashes[symmetry];
+		}
+		return computeHash(symmetry);
+	}
+
+	// Turns keeping the hashes of every symmetric image up to date on or off. Without them, canonicalHash 
+	// and canonicalSymmetry still work, but compute the images' hashes from scratch 
+	public void setSymmetryHashes(boolean maintain){
+		if(maintain && numHashes == 1){
+			for(int s=1; s<hashes.length; s++){
+				hashes[s] = computeHash(s);
+			}
+		}
+		numHashes = maintain ? hashes.length : 1;
+	}
+
+	// Returns the hash shared by this position and all of its symmetric images: the smallest of their hashes 
+	public long canonicalHash(){
+		return hash(canonicalSymmetry());
+	}
+
+	// Returns the symmetry mapping this position to its canonical image (the one whose hash is canonicalHash)
+	public int canonicalSymmetry(){
+		int best = IDENTITY;
+		long bestHash = hashes[IDENTITY];
+		for(int s=1; s<hashes.length; s++){
+			long h = hash(s);
+			if(h < bestHash){
+				best = s;
+				bestHash = h;
+			}
+		}
+		return best;
+	}
+
+	// Returns the canonical image of this position: equal for all positions that are symmetric to each other
+	public GameState canonical(){
+		return transform(canonicalSymmetry());
+	}
+
+	// Returns the number of symmetries of this board that preserve the game (see BoardGeometry)
+	public int numSymmetries(){
+		return geometry.numSymmetries;
+	}
+
+	// Returns the image of this position under the given symmetry 
+	public GameState transform(int symmetry){
+		GameState result = new GameState(this);
+		for(int i=0; i<result.pieces.length; i++){
+			result.pieces[i] = 0;
+		}
+		for(int p=0; p<2; p++){
+			for(int w=0; w<words; w++){
+				long own = pieces[p*words + w];
+				while(own != 0){
+					int image = geometry.symmetrySquare[symmetry][64*w + Long.numberOfTrailingZeros(own)];
+					result.pieces[p*words + (image >>> 6)] |= 1L << image;
+					own &= own - 1;
+				}
+			}
+		}
+		for(int s=0; s<numHashes; s++){
+			result.hashes[s] = result.computeHash(s);
+		}
+		return result;
+	}
+
+	// Returns the image of a packed move under the given symmetry 
+	public int transformMove(int move, int symmetry){
+		int start = geometry.symmetrySquare[symmetry][square(Move.startRow(move), Move.startCol(move))];
+		return Move.encode(start/cols, start%cols, geometry.symmetryDirection[symmetry][Move.direction(move)], Move.steps(move), Move.player(move));
+	}
+
+	// Maps a move in this position to the same move in its canonical image 
+	public int toCanonical(int move){
+		return toCanonical(move, canonicalSymmetry());
+	}
+
+	// As above, given the position's canonicalSymmetry(), e.g. when it is needed more than once 
+	public int toCanonical(int move, int symmetry){
+		return transformMove(move, symmetry);
+	}
+
+	// Maps a move in this position's canonical image back to this position
+	public int fromCanonical(int move){
+		return fromCanonical(move, canonicalSymmetry());
+	}
+
+	// As above, given the position's canonicalSymmetry() 
+	public int fromCanonical(int move, int symmetry){
+		return transformMove(move, geometry.inverseSymmetry[symmetry]);
+	}
+
+	// Returns the possible moves from this gamestate, leaving out any move that leads to a position 
+	// symmetric to that of a move earlier in the list 
+	public ArrayList<Move> getDistinctMoves(){
+		ArrayList<Move> moves = getPossibleMoves();
+		ArrayList<Move> distinctMoves = new ArrayList<Move>(moves.size());
+		HashSet<GameState> seen = new HashSet<GameState>();
+		GameState state = copy();
+		for(int i=0; i<moves.size(); i++){
+			state.applyTrustedMove(moves.get(i));
+			if(seen.add(state.canonical())){
+				distinctMoves.add(moves.get(i));
+			}
+			state.undoMove(moves.get(i));
+		}
+		return distinctMoves;
+	}
+
+	// Recomputes the Zobrist hash from scratch 
+	long computeHash(){
+		return computeHash(IDENTITY);
+	}
+
+	// Recomputes the Zobrist hash of the position's image under symmetry from scratch 
+	long computeHash(int symmetry){
+		long h = 0;
+		for(int p=0; p<2; p++){
+			for(int w=0; w<words; w++){
+				long own = pieces[p*words + w];
+				while(own != 0){
+					h ^= geometry.zobristPiece[p][geometry.symmetrySquare[symmetry][64*w + Long.numberOfTrailingZeros(own)]];
+					own &= own - 1;
+				}
+			}
+			if(playersHaveRemoved[p]){
+				h ^= ZOBRIST_REMOVED[p];
+			}
+		}
+		if(turn == PLAYER2){
+			h ^= ZOBRIST_TURN;
+		}
+		return h;
+	}
+
+	// Two gamestates are equal if they have the same board, pieces, side to move and removals 
+	public boolean equals(Object o){
+		if(!(o instanceof GameState)){
+			return false;
+		}
+		GameState other = (GameState)o;
+		return hash() == other.hash() && turn == other.turn && geometry == other.geometry
+			&& Arrays.equals(pieces, other.pieces)
+			&& playersHaveRemoved[PLAYER1] == other.playersHaveRemoved[PLAYER1] 
+			&& playersHaveRemoved[PLAYER2] == other.playersHaveRemoved[PLAYER2];
+	}
+
+	public int hashCode(){
+		return (int)(hash() ^ (hash() >>> 32));
+	}
+
 	// Returns num pieces possessed by a certain player 
 	public int numPieces(int player){
 		int count = 0;
-		for(int i=0; i<BOARD_SIZE; i++){
-			for(int j=0; j<BOARD_SIZE; j++){
-				if(board[i][j] == player){
-					count++;
-				}
-			}
+		for(int w=0; w<words; w++){
+			count += Long.bitCount(pieces[player*words + w]);
 		}
 		return count;
 	}
 
 	// Return num moves 
 	public int numMoves(int player){
-		if(player==turn){
-			return getPossibleMoves().size();
-		} else {
-			return getPossibleOtherMoves().size();
+		return countMoves(player);
+	}
+
+	// The weights of the evaluation features (see EvaluationFeatures) in complexScore1..5 
+	final static int[][] COMPLEX_SCORE_WEIGHTS = {
+		{2, 1, 0, 0},
+		{2, 0, 1, 0},
+		{2, 0, 0, 1},
+		{3, 0, 2, 0},
+		{3, 0, 1, 0}
+	};
+
+	// Turns incremental maintenance of the evaluation features on or off 
+	public void setIncrementalFeatures(boolean maintain){
+		maintainFeatures = maintain;
+		if(!maintain){
+			features = null;
+		}
+	}
+
+	// Returns the incrementally maintained evaluation features, building them if need be, or null 
+	// if they are not maintained or a player still has to remove a piece 
+	EvaluationFeatures features(){
+		if(features == null && maintainFeatures && playersHaveRemoved[PLAYER1] && playersHaveRemoved[PLAYER2]){
+			features = new EvaluationFeatures(this);
+		}
+		return features;
+	}
+
+	// Returns {counts[player], counts[other player]}
+	static int[] relativeTo(int player, int[] counts, int feature){
+		return new int[]{counts[2*feature + player], counts[2*feature + OPPOSITE_PLAYER[player]]};
+	}
+
+	// Returns the counts of every evaluation feature in this position, laid out as in EvaluationFeatures: 
+	// the maintained ones if there are any, otherwise computed afresh. The array is 
+	// reused, so read it before changing the position 
+	int[] featureCounts(){
+		if(features() != null){
+			return features.counts;
+		}
+		return computeFeatureCounts();
+	}
+
+	// Computes every evaluation feature of this position in one pass over the pieces that can move, 
+	// without generating move lists or allocating 
+	int[] computeFeatureCounts(){
+		if(kernelCounts == null){
+			kernelCounts = new int[2*EvaluationFeatures.NUM_FEATURES];
+			kernelBoards = new long[3*words];
+		}
+		int[] counts = kernelCounts;
+		long[] boards = kernelBoards;
+		int endangered = 2*words;
+		for(int i=0; i<counts.length; i++){
+			counts[i] = 0;
+		}
+		for(int w=0; w<words; w++){
+			boards[endangered + w] = 0;
+		}
+
+		// Each player's moves: which pieces can move, how many moves there are, and which squares they jump over
+		for(int p=0; p<2; p++){
+			for(int w=0; w<words; w++){
+				if(!playersHaveRemoved[p]){
+					// Every piece can remove itself 
+					boards[p*words + w] = pieces[p*words + w];
+					counts[2*EvaluationFeatures.MOBILITY + p] += Long.bitCount(pieces[p*words + w]);
+					continue;
+				}
+				long jumpers = 0;
+				for(int k=0; k<NUM_DIRECTIONS; k++){
+					long direction = jumpersWord(p, k, w);
+					jumpers |= direction;
+					while(direction != 0){
+						int square = 64*w + Long.numberOfTrailingZeros(direction);
+						direction &= direction - 1;
+						int length = jumpLength(p, square, k);
+						int[] ray = geometry.rays[square*NUM_DIRECTIONS + k];
+						counts[2*EvaluationFeatures.MOBILITY + p] += length;
+						for(int i=1; i<=length; i++){
+							int jumped = ray[2*i-2];
+							boards[endangered + (jumped >>> 6)] |= 1L << jumped;
+						}
+					}
+				}
+				boards[p*words + w] = jumpers;
+			}
+		}
+
+		// Then the safe ones: moves and movable pieces on squares nothing jumps over
+		for(int p=0; p<2; p++){
+			int safeMoves = counts[2*EvaluationFeatures.MOBILITY + p];
+			for(int w=0; w<words; w++){
+				long movable = boards[p*words + w];
+				counts[2*EvaluationFeatures.MOVABLE_SQUARES + p] += Long.bitCount(movable);
+				counts[2*EvaluationFeatures.SAFE_SQUARES + p] += Long.bitCount(movable & ~boards[endangered + w]);
+				long exposed = movable & boards[endangered + w];
+				while(exposed != 0){
+					safeMoves -= movesFrom(p, 64*w + Long.numberOfTrailingZeros(exposed));
+					exposed &= exposed - 1;
+				}
+			}
+			counts[2*EvaluationFeatures.SAFE_MOVES + p] = safeMoves;
+		}
+		return counts;
+	}
+
+	// Returns the number of moves player's piece on square can make 
+	int movesFrom(int player, int square){
+		if(!playersHaveRemoved[player]){
+			return 1;
+		}
+		int moves = 0;
+		for(int k=0; k<NUM_DIRECTIONS; k++){
+			moves += jumpLength(player, square, k);
+		}
+		return moves;
+	}
+
+	// Returns the provided player's evaluation of this gamestate as a weighted sum of the feature counts: 
+	// weights[MOBILITY] times the move difference plus, for the other features, weight times their count
+	public int weightedScore(int player, int[] weights){
+		int[] counts = featureCounts();
+		int other = OPPOSITE_PLAYER[player];
+		int score = weights[EvaluationFeatures.MOBILITY]*(counts[2*EvaluationFeatures.MOBILITY + player] - counts[2*EvaluationFeatures.MOBILITY + other]);
+		for(int f=1; f<EvaluationFeatures.NUM_FEATURES; f++){
+			score += weights[f]*counts[2*f + player];
 		}
+		return score;
 	}
 
 	// Returns an array containing the requested player's safe moves count in entry 0 and
 	// the other player's safe moves count in entry 1
 	public int[] numSafeMoves(int player){
-		return numSafeMoves(player, getPossibleMoves(), getPossibleOtherMoves());
+		return relativeTo(player, featureCounts(), EvaluationFeatures.SAFE_MOVES);
 	}
 
 	// As above, but with moves pre-calculated 
@@ -401,9 +1050,8 @@ class GameState{
 			if(endangered[m.startRow()][m.startCol()]){
 				continue;
 			}
-			ArrayList<int[]> jumpedOver = m.jumpedOver();
-			for(int j=0; j<jumpedOver.size(); j++){
-				if(movable[jumpedOver.get(j)[0]][jumpedOver.get(j)[1]]){
+			for(int j=1; j<=m.steps(); j++){
+				if(movable[Move.jumpedRow(m.code(), j)][Move.jumpedCol(m.code(), j)]){
 					continue;
 				}
 			}
@@ -417,9 +1065,8 @@ class GameState{
 			if(endangered[m.startRow()][m.startCol()]){
 				continue;
 			}
-			ArrayList<int[]> jumpedOver = m.jumpedOver();
-			for(int j=0; j<jumpedOver.size(); j++){
-				if(movable[jumpedOver.get(j)[0]][jumpedOver.get(j)[1]]){
+			for(int j=1; j<=m.steps(); j++){
+				if(movable[Move.jumpedRow(m.code(), j)][Move.jumpedCol(m.code(), j)]){
 					continue;
 				}
 			}
@@ -439,7 +1086,7 @@ class GameState{
 	// move, are not endangered, and which can move over pieces which cannot move 
 	// Ditto for the other player's in entry 1
 	public int[] numSafeSquares(int player){
-		return numSafeSquares(player, getPossibleMoves(), getPossibleOtherMoves());
+		return relativeTo(player, featureCounts(), EvaluationFeatures.SAFE_SQUARES);
 	}
 
 	// As above, but with moves precomputed 
@@ -452,9 +1099,9 @@ class GameState{
 		boolean[][] endangered = pieceInfo[0];
 		boolean[][] movable = pieceInfo[1];
 
-		int[][] safeMoveAt = new int[BOARD_SIZE][BOARD_SIZE];
-		for(int i=0; i<BOARD_SIZE; i++){
-			for(int j=0; j<BOARD_SIZE; j++){
+		int[][] safeMoveAt = new int[rows][cols];
+		for(int i=0; i<rows; i++){
+			for(int j=0; j<cols; j++){
 				safeMoveAt[i][j] = EMPTY;
 			}
 		}
@@ -466,9 +1113,8 @@ class GameState{
 			if(endangered[m.startRow()][m.startCol()]){
 				continue;
 			}
-			ArrayList<int[]> jumpedOver = m.jumpedOver();
-			for(int j=0; j<jumpedOver.size(); j++){
-				if(movable[jumpedOver.get(j)[0]][jumpedOver.get(j)[1]]){
+			for(int j=1; j<=m.steps(); j++){
+				if(movable[Move.jumpedRow(m.code(), j)][Move.jumpedCol(m.code(), j)]){
 					continue;
 				}
 			}
@@ -483,9 +1129,8 @@ class GameState{
 			if(endangered[m.startRow()][m.startCol()]){
 				continue;
 			}
-			ArrayList<int[]> jumpedOver = m.jumpedOver();
-			for(int j=0; j<jumpedOver.size(); j++){
-				if(movable[jumpedOver.get(j)[0]][jumpedOver.get(j)[1]]){
+			for(int j=1; j<=m.steps(); j++){
+				if(movable[Move.jumpedRow(m.code(), j)][Move.jumpedCol(m.code(), j)]){
 					continue;
 				}
 			}
@@ -493,8 +1138,8 @@ class GameState{
 		}
 
 		int[] safeMoveCount = new int[]{0,0};
-		for(int i=0; i<BOARD_SIZE; i++){
-			for(int j=0; j<BOARD_SIZE; j++){
+		for(int i=0; i<rows; i++){
+			for(int j=0; j<cols; j++){
 				if(safeMoveAt[i][j] == turn){
 					safeMoveCount[0]++;
 				}
@@ -516,7 +1161,7 @@ class GameState{
 	// move over pieces which cannot move 
 	// Ditto for the other player's in entry 1
 	public int[] numSafeSquares2(int player){
-		return numSafeSquares2(player, getPossibleMoves(), getPossibleOtherMoves());
+		return relativeTo(player, featureCounts(), EvaluationFeatures.MOVABLE_SQUARES);
 	}
 
 	public int[] numSafeSquares2(int player, ArrayList<Move> _moves, ArrayList<Move> _enemyMoves){
@@ -528,9 +1173,9 @@ class GameState{
 		boolean[][] endangered = pieceInfo[0];
 		boolean[][] movable = pieceInfo[1];
 
-		int[][] safeMoveAt = new int[BOARD_SIZE][BOARD_SIZE];
-		for(int i=0; i<BOARD_SIZE; i++){
-			for(int j=0; j<BOARD_SIZE; j++){
+		int[][] safeMoveAt = new int[rows][cols];
+		for(int i=0; i<rows; i++){
+			for(int j=0; j<cols; j++){
 				safeMoveAt[i][j] = EMPTY;
 			}
 		}
@@ -539,9 +1184,8 @@ class GameState{
 		// where jumped over pieces cannot move
 		for(int i=0; i<moves.size(); i++){
 			Move m = moves.get(i);
-			ArrayList<int[]> jumpedOver = m.jumpedOver();
-			for(int j=0; j<jumpedOver.size(); j++){
-				if(movable[jumpedOver.get(j)[0]][jumpedOver.get(j)[1]]){
+			for(int j=1; j<=m.steps(); j++){
+				if(movable[Move.jumpedRow(m.code(), j)][Move.jumpedCol(m.code(), j)]){
 					continue;
 				}
 			}
@@ -553,9 +1197,8 @@ class GameState{
 		// where jumped over pieces cannot move
 		for(int i=0; i<enemyMoves.size(); i++){
 			Move m = enemyMoves.get(i);
-			ArrayList<int[]> jumpedOver = m.jumpedOver();
-			for(int j=0; j<jumpedOver.size(); j++){
-				if(movable[jumpedOver.get(j)[0]][jumpedOver.get(j)[1]]){
+			for(int j=1; j<=m.steps(); j++){
+				if(movable[Move.jumpedRow(m.code(), j)][Move.jumpedCol(m.code(), j)]){
 					continue;
 				}
 			}
@@ -563,8 +1206,8 @@ class GameState{
 		}
 
 		int[] safeMoveCount = new int[]{0,0};
-		for(int i=0; i<BOARD_SIZE; i++){
-			for(int j=0; j<BOARD_SIZE; j++){
+		for(int i=0; i<rows; i++){
+			for(int j=0; j<cols; j++){
 				if(safeMoveAt[i][j] == turn){
 					safeMoveCount[0]++;
 				}
@@ -584,81 +1227,41 @@ class GameState{
 	// Return the provided player's evaluation of this gamestate 
 	// 2*the move difference + the number of safe moves they have 
 	public int complexScore1(int player){
-		ArrayList<Move> curMoves = getPossibleMoves();
-		ArrayList<Move> nextMoves = getPossibleOtherMoves();
-		int[] safeMoves = numSafeMoves(player, curMoves, nextMoves);
-
-		if(player == turn){
-			return 2*curMoves.size() - 2*nextMoves.size() + safeMoves[0];
-		} else {
-			return 2*nextMoves.size() - 2*curMoves.size() + safeMoves[0];
-		}
+		return weightedScore(player, COMPLEX_SCORE_WEIGHTS[0]);
 	}
 
 	// Return the provided player's evaluation of this gamestate 
 	// 2*the move difference + the number of safe squares they have 
 	public int complexScore2(int player){
-		ArrayList<Move> curMoves = getPossibleMoves();
-		ArrayList<Move> nextMoves = getPossibleOtherMoves();
-		int[] safeMoves = numSafeSquares(player, curMoves, nextMoves);
-
-		if(player == turn){
-			return 2*curMoves.size() - 2*nextMoves.size() + safeMoves[0];
-		} else {
-			return 2*nextMoves.size() - 2*curMoves.size() + safeMoves[0];
-		}
+		return weightedScore(player, COMPLEX_SCORE_WEIGHTS[1]);
 	}
 
 	// Return the provided player's evaluation of this gamestate 
 	// 2*the move difference + the number of safe squares they have 
 	// But uses safeSquares2, which is simpler and faster to compute 
 	public int complexScore3(int player){
-		ArrayList<Move> curMoves = getPossibleMoves();
-		ArrayList<Move> nextMoves = getPossibleOtherMoves();
-		int[] safeMoves = numSafeSquares2(player, curMoves, nextMoves);
-
-		if(player == turn){
-			return 2*curMoves.size() - 2*nextMoves.size() + safeMoves[0];
-		} else {
-			return 2*nextMoves.size() - 2*curMoves.size() + safeMoves[0];
-		}
+		return weightedScore(player, COMPLEX_SCORE_WEIGHTS[2]);
 	}
 
 	// Return the provided player's evaluation of this gamestate 
 	// 3*the move difference + 2*the number of safe squares they have 
 	public int complexScore4(int player){
-		ArrayList<Move> curMoves = getPossibleMoves();
-		ArrayList<Move> nextMoves = getPossibleOtherMoves();
-		int[] safeMoves = numSafeSquares(player, curMoves, nextMoves);
-
-		if(player == turn){
-			return 3*curMoves.size() - 3*nextMoves.size() + 2*safeMoves[0];
-		} else {
-			return 3*nextMoves.size() - 3*curMoves.size() + 2*safeMoves[0];
-		}
-	}	
+		return weightedScore(player, COMPLEX_SCORE_WEIGHTS[3]);
+	}
 
 	// Return the provided player's evaluation of this gamestate 
 	// 3*the move difference + 1*the number of safe squares they have 
 	public int complexScore5(int player){
-		ArrayList<Move> curMoves = getPossibleMoves();
-		ArrayList<Move> nextMoves = getPossibleOtherMoves();
-		int[] safeMoves = numSafeSquares(player, curMoves, nextMoves);
-
-		if(player == turn){
-			return 3*curMoves.size() - 3*nextMoves.size() + 1*safeMoves[0];
-		} else {
-			return 3*nextMoves.size() - 3*curMoves.size() + 1*safeMoves[0];
-		}
-	}	
+		return weightedScore(player, COMPLEX_SCORE_WEIGHTS[4]);
+	}
 
 	// Generates a string representation of the board
 	public String displayBoard(){
-		String returnString = "\t1 2 3 4 5 6 7 8\n\n";
-		for (int i=0; i<BOARD_SIZE; i++){
+		String returnString = columnHeader();
+		for (int i=0; i<rows; i++){
 			returnString += Integer.toString(i+1) + "\t";
-			for(int j=0; j<BOARD_SIZE; j++){
-				returnString += PLAYER_SYMBOL[board[i][j]] + " ";
+			for(int j=0; j<cols; j++){
+				returnString += cell(PLAYER_SYMBOL[pieceAt(i, j)]);
 			}
 			returnString+="\n";
 		}
@@ -669,14 +1272,14 @@ class GameState{
 		String returnString = "";
 		boolean[][][] info = pieceInfo();
 		returnString += "Endangered\n";
-		returnString += "\t1 2 3 4 5 6 7 8\n\n";
-		for (int i=0; i<BOARD_SIZE; i++){
+		returnString += columnHeader();
+		for (int i=0; i<rows; i++){
 			returnString += Integer.toString(i+1) + "\t";
-			for(int j=0; j<BOARD_SIZE; j++){
+			for(int j=0; j<cols; j++){
 				if(info[0][i][j]){
-					returnString +=  "1 ";
+					returnString +=  cell('1');
 				} else {
-					returnString +=  "0 ";
+					returnString +=  cell('0');
 				}
 				
 			}
@@ -684,14 +1287,14 @@ class GameState{
 		}
 
 		returnString += "Movable\n";
-		returnString += "\t1 2 3 4 5 6 7 8\n\n";
-		for (int i=0; i<BOARD_SIZE; i++){
+		returnString += columnHeader();
+		for (int i=0; i<rows; i++){
 			returnString += Integer.toString(i+1) + "\t";
-			for(int j=0; j<BOARD_SIZE; j++){
+			for(int j=0; j<cols; j++){
 				if(info[1][i][j]){
-					returnString +=  "1 ";
+					returnString +=  cell('1');
 				} else {
-					returnString +=  "0 ";
+					returnString +=  cell('0');
 				}
 				
 			}
@@ -700,6 +1303,28 @@ class GameState{
 		return returnString;
 	}
 
+	// The column numbers line printed above a board 
+	String columnHeader(){
+		String returnString = "\t";
+		for(int j=0; j<cols; j++){
+			String number = Integer.toString(j+1);
+			returnString += number + " ";
+			for(int k=number.length(); k<Integer.toString(cols).length(); k++){
+				returnString += " ";
+			}
+		}
+		return returnString.substring(0, returnString.length()-1) + "\n\n";
+	}
+
+	// One square of a printed board, padded to the width of the column numbers 
+	String cell(char symbol){
+		String returnString = symbol + " ";
+		for(int k=1; k<Integer.toString(cols).length(); k++){
+			returnString += " ";
+		}
+		return returnString;
+	}
+
 	// Generates a string representation of the game state 
 	public String toString(){
 		String returnString = "";
@@ -708,6 +1333,20 @@ class GameState{
 		return returnString;
 	}
 
+	// Generates the one-line notation of the game state that GameState(String) reads back 
+	public String toNotation(){
+		String returnString = "";
+		for (int i=0; i<rows; i++){
+			if(i > 0){
+				returnString += "/";
+			}
+			for(int j=0; j<cols; j++){
+				returnString += PLAYER_SYMBOL[pieceAt(i, j)];
+			}
+		}
+		return returnString + " " + PLAYER_SYMBOL[turn];
+	}
+
 	// Testing
 	public static void main(String[] args){
 		
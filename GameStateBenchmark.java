@@ -0,0 +1,254 @@
+// GameStateBenchmark.java
+// Microbenchmarks of the GameState operations and evaluation functions the search spends its time in,
+// reporting the time and the bytes allocated per operation over a fixed corpus of opening, middlegame
+// and endgame positions.
+//
+// Usage: java GameStateBenchmark [filter] [milliseconds per iteration]
+//   filter   only runs operations whose name contains it, e.g. "complexScore" or "e("
+//
+// Each operation is warmed up, then measured over several iterations; the reported time is the mean
+// and spread of the iterations. Allocation is the thread's allocated bytes over the measured iterations
+// divided by the operations run, so it includes everything the operation allocates and nothing else.
+// Operations that read a position's cached move lists or counts start from a position whose caches
+// were cleared, as they are at a freshly reached node of a search. Operations marked "incremental"
+// run on positions that maintain their evaluation features incrementally; compare applying and
+// undoing a move with them against computing the features afresh to see which is cheaper.
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+class GameStateBenchmark{
+
+	final static int WARMUP_ITERATIONS = 5;
+	final static int MEASURED_ITERATIONS = 5;
+	final static int POSITIONS_PER_PHASE = 32;
+	final static long CORPUS_SEED = 20161017L;
+
+	// The phases of the corpus, by the number of plies played from the initial position
+	final static String[] PHASES = {"opening", "middlegame", "endgame"};
+	final static int[][] PHASE_PLIES = {{0, 6}, {12, 24}, {30, 60}};
+
+	// An operation on a position, returning something derived from the result so it is not optimised away
+	static abstract class Operation{
+		final String name;
+
+		Operation(String _name){
+			name = _name;
+		}
+
+		abstract long run(GameState g);
+	}
+
+	long iterationNanos;
+	long sink = 0;
+	com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	public GameStateBenchmark(long iterationMillis){
+		iterationNanos = iterationMillis*1000000L;
+	}
+
+	// Returns the corpus positions of one phase: reached by random play from a fixed seed, keeping only
+	// positions where the side to move has a move
+	public static GameState[] corpus(int phase){
+		Random r = new Random(CORPUS_SEED + phase);
+		GameState[] positions = new GameState[POSITIONS_PER_PHASE];
+		int found = 0;
+		while(found < POSITIONS_PER_PHASE){
+			GameState g = new GameState();
+			int plies = PHASE_PLIES[phase][0] + r.nextInt(PHASE_PLIES[phase][1] - PHASE_PLIES[phase][0] + 1);
+			for(int i=0; i<plies && !g.isTerminal(); i++){
+				ArrayList<Move> moves = g.getPossibleMoves();
+				g.applyMoveInPlace(moves.get(r.nextInt(moves.size())));
+			}
+			if(!g.isTerminal()){
+				positions[found++] = g;
+			}
+		}
+		return positions;
+	}
+
+	// Runs operation over the positions until the time runs out; returns {operations run, nanoseconds, bytes allocated}
+	long[] iteration(Operation operation, GameState[] positions){
+		long threadId = Thread.currentThread().getId();
+		long operations = 0;
+		long startBytes = threads.getThreadAllocatedBytes(threadId);
+		long startTime = System.nanoTime();
+		long elapsed = 0;
+		while(elapsed < iterationNanos){
+			for(int i=0; i<positions.length; i++){
+				sink += operation.run(positions[i]);
+			}
+			operations += positions.length;
+			elapsed = System.nanoTime() - startTime;
+		}
+		long bytes = threads.getThreadAllocatedBytes(threadId) - startBytes;
+		return new long[]{operations, elapsed, bytes};
+	}
+
+	// Warms operation up on the positions, measures it, and prints its time and allocation per operation
+	void measure(Operation operation, String phase, GameState[] positions){
+		for(int i=0; i<WARMUP_ITERATIONS; i++){
+			iteration(operation, positions);
+		}
+		double[] nanosPerOperation = new double[MEASURED_ITERATIONS];
+		long operations = 0;
+		long bytes = 0;
+		for(int i=0; i<MEASURED_ITERATIONS; i++){
+			long[] result = iteration(operation, positions);
+			nanosPerOperation[i] = ((double)result[1])/result[0];
+			operations += result[0];
+			bytes += result[2];
+		}
+		double mean = 0;
+		for(int i=0; i<MEASURED_ITERATIONS; i++){
+			mean += nanosPerOperation[i]/MEASURED_ITERATIONS;
+		}
+		double variance = 0;
+		for(int i=0; i<MEASURED_ITERATIONS; i++){
+			variance += (nanosPerOperation[i] - mean)*(nanosPerOperation[i] - mean)/MEASURED_ITERATIONS;
+		}
+		System.out.println(String.format("%-40s %-11s %12.1f ns/op  +- %8.1f %12.1f B/op",
+			operation.name, phase, mean, Math.sqrt(variance), ((double)bytes)/operations));
+	}
+
+	// Makes g maintain its evaluation features incrementally from now on
+	static void maintainFeatures(GameState g){
+		g.setIncrementalFeatures(true);
+		g.features();
+	}
+
+	// The operations measured: move generation, applying moves, terminal tests, the evaluation features
+	// and scores, and the agents' evaluation function under every strategy
+	public static ArrayList<Operation> operations(){
+		ArrayList<Operation> operations = new ArrayList<Operation>();
+		operations.add(new Operation("getPossibleMoves()"){
+			long run(GameState g){
+				g.invalidateCaches();
+				return g.getPossibleMoves().size();
+			}
+		});
+		final int[] buffer = new int[new GameState().maxMoves()];
+		operations.add(new Operation("getPossibleMoves(int[])"){
+			long run(GameState g){
+				g.invalidateCaches();
+				return g.getPossibleMoves(buffer);
+			}
+		});
+		operations.add(new Operation("applyMove"){
+			long run(GameState g){
+				g.getPossibleMoves(buffer);
+				return g.applyMove(buffer[0]).hash();
+			}
+		});
+		operations.add(new Operation("applyMoveInPlace+undoMove"){
+			long run(GameState g){
+				g.getPossibleMoves(buffer);
+				g.applyMoveInPlace(buffer[0]);
+				g.undoMove(buffer[0]);
+				return g.hash();
+			}
+		});
+		operations.add(new Operation("applyTrustedMove+undoMove"){
+			long run(GameState g){
+				g.getPossibleMoves(buffer);
+				g.applyTrustedMove(buffer[0]);
+				g.undoMove(buffer[0]);
+				return g.hash();
+			}
+		});
+		operations.add(new Operation("applyTrustedMove+undoMove incremental"){
+			long run(GameState g){
+				maintainFeatures(g);
+				g.getPossibleMoves(buffer);
+				g.applyTrustedMove(buffer[0]);
+				g.undoMove(buffer[0]);
+				return g.hash();
+			}
+		});
+		operations.add(new Operation("isTerminal"){
+			long run(GameState g){
+				g.invalidateCaches();
+				return g.isTerminal() ? 1 : 0;
+			}
+		});
+		operations.add(new Operation("pieceInfo"){
+			long run(GameState g){
+				g.invalidateCaches();
+				return g.pieceInfo().length;
+			}
+		});
+		operations.add(new Operation("computeFeatureCounts"){
+			long run(GameState g){
+				return g.computeFeatureCounts()[0];
+			}
+		});
+		operations.add(new Operation("complexScore2 incremental"){
+			long run(GameState g){
+				maintainFeatures(g);
+				g.invalidateCaches();
+				return g.complexScore2(g.turn());
+			}
+		});
+		for(int n=1; n<=5; n++){
+			final int score = n;
+			operations.add(new Operation("complexScore" + Integer.toString(n)){
+				long run(GameState g){
+					g.invalidateCaches();
+					switch(score){
+						case 1:
+							return g.complexScore1(g.turn());
+						case 2:
+							return g.complexScore2(g.turn());
+						case 3:
+							return g.complexScore3(g.turn());
+						case 4:
+							return g.complexScore4(g.turn());
+						default:
+							return g.complexScore5(g.turn());
+					}
+				}
+			});
+		}
+		String[] strategies = {"NUMPIECES", "NUMMOVES", "DIFFERENCEMOVES", "DCOMPLEX1", "DCOMPLEX2", "DCOMPLEX3", "DCOMPLEX4", "DCOMPLEX5", "DCOMPLEX6"};
+		for(int s=0; s<strategies.length; s++){
+			final ABMinimaxAgent[] agents = {new ABMinimaxAgent(GameState.PLAYER1, s, 1), new ABMinimaxAgent(GameState.PLAYER2, s, 1)};
+			operations.add(new Operation("e(" + strategies[s] + ")"){
+				long run(GameState g){
+					g.invalidateCaches();
+					return agents[g.turn()].e(g);
+				}
+			});
+		}
+		return operations;
+	}
+
+	public static void main(String[] args){
+		String filter = (args.length > 0) ? args[0] : "";
+		long iterationMillis = (args.length > 1) ? Long.parseLong(args[1]) : 200;
+		GameStateBenchmark benchmark = new GameStateBenchmark(iterationMillis);
+
+		GameState[][] corpus = new GameState[PHASES.length][];
+		for(int phase=0; phase<PHASES.length; phase++){
+			corpus[phase] = corpus(phase);
+		}
+
+		ArrayList<Operation> operations = operations();
+		for(int i=0; i<operations.size(); i++){
+			Operation operation = operations.get(i);
+			if(!operation.name.contains(filter)){
+				continue;
+			}
+			for(int phase=0; phase<PHASES.length; phase++){
+				GameState[] positions = new GameState[corpus[phase].length];
+				for(int j=0; j<positions.length; j++){
+					positions[j] = corpus[phase][j].copy();
+				}
+				benchmark.measure(operation, PHASES[phase], positions);
+			}
+		}
+		if(benchmark.sink == 42){
+			System.out.println();
+		}
+	}
+}
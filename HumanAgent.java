@@ -69,7 +69,14 @@ public class HumanAgent implements Agent{
 				}			 
 			}
 
-			Move tryMove = new Move(coordinates.size()-1, coordinates, player);
+			Move tryMove;
+			try{
+				tryMove = new Move(coordinates.size()-1, coordinates, player);
+			} catch (IllegalArgumentException e){
+				// Not a straight line of jumps, so it cannot be a legal move
+				System.out.println("That move is invalid");
+				continue;
+			}
 			if(g.isValid(tryMove)){
 				return tryMove;
 			} else {
@@ -2,152 +2,346 @@
 // An agent that does an iteratively deepened ABminimax search to find its next move
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class IDABMinimaxAgent extends ABMinimaxAgent implements Agent{
 
-	boolean idCutoff; 
-	int timeLimit;
+	// Time to search for each move, and how many nodes the search visits between reads of the clock
+	long timeLimitNanos;
+	int pollInterval = NegamaxSearch.DEFAULT_POLL_INTERVAL;
+
+	// Lazy SMP: the number of threads searching each move. Every thread but this one is a helper running
+	// its own iterative deepening, whose only output is what it stores in the shared transposition table.
+	// The helpers run in their own pool, and each keeps its search and move ordering across moves; the
+	// searches are rebuilt along with this agent's when an option changes (null until then)
+	int threads = 1;
+	ForkJoinPool helperPool = null;
+	MoveOrdering[] helperOrderings = new MoveOrdering[0];
+	NegamaxSearch[] helperSearches = null;
+	NegamaxSearch helperSearchesOf = null; // The search of this agent the helpers' were built with
+
+	// Aspiration windows: the half-width of the first window and how much it grows on each re-search
+	// (width 0 if disabled), and the re-searches made so far
+	int aspirationWidth = 0;
+	int aspirationGrowth = 4;
+	long aspirationFailLows = 0;
+	long aspirationFailHighs = 0;
+
+	// Whether each iteration searches the root moves best first, by their values in the previous one, and
+	// a deadline mid-iteration keeps that iteration's result once its first move has been searched
+	boolean rootOrdering = false;
+
+	// The result of the latest searchIteration: the best move, its value, how many moves were searched,
+	// and the value of each move searched (a bound, for moves outside the window)
+	int iterationBestMoveValue;
+	Move iterationBestMove;
+	int iterationMovesSearched;
+	int[] rootValues = new int[0];
 
 	public static final int SECPERMIL = 1000;
+	public static final long NANOSPERMIL = 1000000L;
+	public static final int DEFAULT_SMP_TABLE_MEGABYTES = 64;
+	public static final int MAX_ASPIRATION_RESEARCHES = 3;
 
 	public IDABMinimaxAgent(int _player, int _strategy, int _timeLimit){
 		super(_player, _strategy, 0);
-		idCutoff = false;
-		timeLimit = _timeLimit;
+		timeLimitNanos = SECPERMIL*NANOSPERMIL*_timeLimit;
 
 	}
 
 	public Move getMove(GameState g, Move lastMove){
-		return getMove(g, lastMove, timeLimit);
+		return getMove(g, lastMove, timeLimitNanos);
+	}
+
+	// Sets the time to search for each move, in milliseconds
+	public void setTimeLimitMillis(long millis){
+		setTimeLimitNanos(millis*NANOSPERMIL);
+	}
+
+	// Sets the time to search for each move, in nanoseconds
+	public void setTimeLimitNanos(long nanos){
+		if(nanos <= 0){
+			throw new IllegalArgumentException("Time limit must be positive");
+		}
+		timeLimitNanos = nanos;
 	}
 
+	// Makes the search read the clock every given number of nodes
+	public void setPollInterval(int nodes){
+		if(nodes <= 0){
+			throw new IllegalArgumentException("Poll interval must be positive");
+		}
+		pollInterval = nodes;
+	}
 
-	// Find and return minimax-recommended move 
-	protected Move getMove(GameState g, Move lastMove, int timeInSeconds){
+	// Makes each move be searched by the given number of threads (Lazy SMP). The helper threads only help
+	// through the transposition table, so the agent gets one if it has none
+	public void setThreads(int _threads){
+		if(_threads < 1){
+			throw new IllegalArgumentException("Must search with at least one thread");
+		}
+		threads = _threads;
+		if(threads > 1 && table == null){
+			setTranspositionTable(DEFAULT_SMP_TABLE_MEGABYTES);
+		}
+		if(helperPool != null){
+			helperPool.shutdown();
+		}
+		helperPool = (threads > 1) ? new ForkJoinPool(threads-1) : null;
+		helperOrderings = new MoveOrdering[threads-1];
+		helperSearches = null;
+	}
+
+	// Returns the helpers' searches, set up with this agent's current options, each with the move
+	// ordering its helper has learned so far
+	protected NegamaxSearch[] helperSearches(){
+		if(helperSearches == null || helperSearchesOf != search()){
+			helperSearches = new NegamaxSearch[threads-1];
+			for(int i=0; i<helperSearches.length; i++){
+				if(ordering == null){
+					helperOrderings[i] = null;
+				} else if(helperOrderings[i] == null){
+					helperOrderings[i] = new MoveOrdering();
+				}
+				helperSearches[i] = new NegamaxSearch(this, helperOrderings[i]);
+			}
+			helperSearchesOf = search();
+		}
+		return helperSearches;
+	}
+
+	// Find and return minimax-recommended move, searching for at most timeInNanos. The search is aborted
+	// as soon as the deadline is seen, mid-subtree if need be, and the best completed result returned
+	protected Move getMove(GameState g, Move lastMove, long timeInNanos){
 		
-		long startTimeMillis = System.currentTimeMillis();
+		long startTimeNanos = System.nanoTime();
+		long deadlineNanos = startTimeNanos + timeInNanos;
+		NegamaxSearch search = search();
+		search.setPollInterval(pollInterval);
+		search.setDeadline(deadlineNanos);
+		newSearch(g);
 
-		// Generate possible successors 
-		ArrayList<Move> successors = g.getPossibleMoves();
+		// Generate possible successors, leaving out moves symmetric to earlier ones
+		ArrayList<Move> successors = rootMoves(g);
+		rootValues = new int[successors.size()];
 		
 		int overallBestMoveValue = Integer.MIN_VALUE;
 		Move overallBestMove = null;
+
+		// Search on a private copy, applying and undoing moves in place
+		GameState state = searchState(g);
 		int depth = 2; 
 
-		while((System.currentTimeMillis() - startTimeMillis < SECPERMIL*timeInSeconds)){
+		// Start the helpers, each on its own copy and with its own search, move ordering and buffers
+		NegamaxSearch[] helperSearches = (threads > 1) ? helperSearches() : new NegamaxSearch[0];
+		ForkJoinTask<?>[] helpers = new ForkJoinTask<?>[helperSearches.length];
+		long helperNodes = 0;
+		for(int i=0; i<helpers.length; i++){
+			final NegamaxSearch helperSearch = helperSearches[i];
+			final GameState helperState = searchState(g);
+			final ArrayList<Move> helperMoves = new ArrayList<Move>(successors);
+			final int helper = i+1;
+			if(helperSearch.ordering != null){
+				helperSearch.ordering.newSearch(g.geometry);
+			}
+			helperSearch.setPollInterval(pollInterval);
+			helperSearch.setDeadline(deadlineNanos);
+			helperNodes -= helperSearch.nodes;
+			helpers[i] = helperPool.submit(new Runnable(){
+				public void run(){
+					helpSearch(helperSearch, helperState, helperMoves, helper);
+				}
+			});
+		}
+
+		while(System.nanoTime() - deadlineNanos < 0){
 			
-			int bestMoveValue = Integer.MIN_VALUE;
-			Move bestMove = null;
+			// Search within a window around the previous iteration's value, widening it whenever the
+			// value falls outside it, until the value is known
+			int alpha = Integer.MIN_VALUE;
+			int beta = Integer.MAX_VALUE;
+			long width = aspirationWidth;
+			if(aspirationWidth > 0 && overallBestMove != null){
+				alpha = windowBound(overallBestMoveValue - width);
+				beta = windowBound(overallBestMoveValue + width);
+			}
+			int failLows = 0;
+			int failHighs = 0;
 			boolean timecutoff = false;
-			idCutoff = false;
-
-			for(int i=0; i<successors.size(); i++){
-				
-				if(System.currentTimeMillis() - startTimeMillis > SECPERMIL*timeInSeconds){
-					System.out.println("Cutoff mid-depth " + Integer.toString(depth));
-					timecutoff = true;
+			while(true){
+				timecutoff = !searchIteration(state, successors, depth, alpha, beta, deadlineNanos);
+				if(timecutoff){
 					break;
 				}
-
-				// Get gamestate resulting from each 
-				Move move = successors.get(i);
-				//System.out.println(move);
-				GameState result = g.applyMove(move);
-				//System.out.println(result);
-
-				//Apply minimax to each to determine expected value 
-				int value = minValue(result, 1, depth, Integer.MIN_VALUE, Integer.MAX_VALUE);
-
-				if(value > bestMoveValue){
-					bestMoveValue = value;
-					bestMove = move;
+				// Open the window fully once it has failed too often, as it does when a win or loss is found
+				width = Math.min(width, 1L << 32)*aspirationGrowth;
+				if(failLows + failHighs + 1 >= MAX_ASPIRATION_RESEARCHES){
+					width = 1L << 33;
 				}
+				if(iterationBestMoveValue >= beta){
+					failHighs++;
+					beta = windowBound(overallBestMoveValue + width);
+				} else if(iterationBestMoveValue <= alpha && alpha != Integer.MIN_VALUE){
+					failLows++;
+					alpha = windowBound(overallBestMoveValue - width);
+				} else {
+					break;
+				}
+			}
+			if(aspirationWidth > 0){
+				aspirationFailLows += failLows;
+				aspirationFailHighs += failHighs;
+				System.out.println("Depth " + Integer.toString(depth) + " aspiration re-searches: " + Integer.toString(failLows) + " fail-low, " + Integer.toString(failHighs) + " fail-high (" 
+					+ Long.toString(aspirationFailLows) + " and " + Long.toString(aspirationFailHighs) + " in all)");
+			}
+			int bestMoveValue = iterationBestMoveValue;
+			Move bestMove = iterationBestMove;
 
-			}	
-
-			if(!idCutoff){	
+			if(timecutoff){
+				// The first move searched was the previous iteration's best, so a move found at least as good
+				// (with a value inside the window, not just a bound below it) is the better choice
+				if(rootOrdering && iterationMovesSearched > 0 && bestMoveValue > alpha){
+					overallBestMoveValue = bestMoveValue;
+					overallBestMove = bestMove;
+					System.out.println("Cutoff mid-depth " + Integer.toString(depth) + ". Move " + bestMove.toString() + " from " 
+						+ Integer.toString(iterationMovesSearched) + " of " + Integer.toString(successors.size()) + " moves");
+				} else {
+					System.out.println("Cutoff mid-depth " + Integer.toString(depth));
+				}
+			} else if(!search.depthLimitReached){	
 				overallBestMoveValue = bestMoveValue;
 				overallBestMove = bestMove; 
-				System.out.println("Explored whole move tree. Move " + bestMove.toString() + " at depth " + Integer.toString(depth) + " in " + Long.toString(System.currentTimeMillis() - startTimeMillis));					
+				System.out.println("Explored whole move tree. Move " + bestMove.toString() + " at depth " + Integer.toString(depth) + " in " + Long.toString((System.nanoTime() - startTimeNanos)/NANOSPERMIL));					
 				break; 
-			}
-
-			if(!timecutoff){
-				
-			
+			} else {
 				overallBestMoveValue = bestMoveValue;
 				overallBestMove = bestMove; 
 
-				System.out.println("Move " + bestMove.toString() + " at depth " + Integer.toString(depth) + " in " + Long.toString(System.currentTimeMillis() - startTimeMillis));					
+				System.out.println("Move " + bestMove.toString() + " at depth " + Integer.toString(depth) + " in " + Long.toString((System.nanoTime() - startTimeNanos)/NANOSPERMIL));					
 			
+				if(rootOrdering){
+					sortRootMoves(successors, rootValues);
+				}
 				depth++; 	
 			}
+		}
+		search.clearDeadline();
 
+		// Stop the helpers
+		for(int i=0; i<helpers.length; i++){
+			helperSearches[i].abort();
+		}
+		for(int i=0; i<helpers.length; i++){
+			helpers[i].join();
+			helperNodes += helperSearches[i].nodes;
+		}
+		if(helpers.length > 0){
+			System.out.println("Lazy SMP: " + Integer.toString(threads) + " threads, " + Long.toString(helperNodes) + " helper nodes");
+		}
 
-			
+		// Even the first iteration ran out of time: fall back on whatever it found
+		if(overallBestMove == null){
+			overallBestMove = (iterationBestMove != null) ? iterationBestMove : successors.get(0);
 		}
 		return overallBestMove;
 	}
 
-	protected int maxValue(GameState g, int depth, int depthLimit, int alpha, int beta){
-		
-		// Depth/terminal cutoff 
-		if(g.isTerminal()){
-			return e(g);
-		}
-		if(depth == depthLimit){
-			idCutoff = true;
-			return e(g); 
+	// The search run by the given helper thread (from 1) until it is aborted: iterative deepening like the
+	// main thread's, but staggered so the threads do not all search the same subtrees in step. Odd helpers
+	// start a ply deeper, and each helper starts its root moves at a different one
+	protected void helpSearch(NegamaxSearch search, GameState state, ArrayList<Move> successors, int helper){
+		Collections.rotate(successors, -helper);
+		for(int depth = 2 + helper%2; !search.aborted; depth++){
+			int bestValue = Integer.MIN_VALUE;
+			search.depthLimitReached = false;
+			for(int i=0; i<successors.size() && !search.aborted; i++){
+				Move move = successors.get(i);
+				state.applyTrustedMove(move);
+				bestValue = Math.max(bestValue, search.rootValue(state, depth, bestValue, Integer.MIN_VALUE, Integer.MAX_VALUE));
+				state.undoMove(move);
+			}
+			if(!search.depthLimitReached){
+				return;
+			}
 		}
+	}
+
+	// Searches every successor to the given depth within the window (alpha, beta), leaving the best move
+	// and its value in iterationBestMove and iterationBestMoveValue. Stops early if a move's value reaches
+	// beta, or returns false if the deadline (in System.nanoTime()) passes first
+	protected boolean searchIteration(GameState state, ArrayList<Move> successors, int depth, int alpha, int beta, long deadlineNanos){
+		iterationBestMoveValue = Integer.MIN_VALUE;
+		iterationBestMove = null;
+		iterationMovesSearched = 0;
+		search().depthLimitReached = false;
 
-		// Generate successors
-		ArrayList<Move> successors = g.getPossibleMoves();
 		for(int i=0; i<successors.size(); i++){
-			// Evaluate this successor
-			GameState result = g.applyMove(successors.get(i));
-			int value = minValue(result, depth+1, depthLimit, alpha, beta);
 			
-			// Update alpha 
-			if(value > alpha){
-				alpha = value;
+			if(System.nanoTime() - deadlineNanos >= 0){
+				return false;
 			}
 
-			//Possible cutoff 
-			if(alpha >= beta){
-				return beta;
+			// Get gamestate resulting from each 
+			Move move = successors.get(i);
+			state.applyTrustedMove(move);
+
+			//Apply minimax to each to determine expected value 
+			int value = rootValue(state, depth, iterationBestMoveValue, alpha, beta);
+			state.undoMove(move);
+			if(search().aborted){
+				return false;
 			}
-		}
-		return alpha; 
+			rootValues[i] = value;
+			iterationMovesSearched++;
+
+			if(value > iterationBestMoveValue){
+				iterationBestMoveValue = value;
+				iterationBestMove = move;
+			}
+			if(value >= beta){
+				break;
+			}
+		}	
+		return true;
 	}
 
-	protected int minValue(GameState g, int depth, int depthLimit, int alpha, int beta){
-		// Depth/terminal cutoff 
-		if(g.isTerminal()){
-			return e(g);
-		}
-		if(depth == depthLimit){
-			idCutoff = true;
-			return e(g); 
+	// Makes each iteration after the first search within width of the previous iteration's value, 
+	// multiplying the width by growth each time the value falls outside it (width 0 to disable)
+	public void setAspirationWindow(int width, int growth){
+		if(width < 0 || growth < 2){
+			throw new IllegalArgumentException("Aspiration width must be non-negative and growth at least 2");
 		}
+		aspirationWidth = width;
+		aspirationGrowth = growth;
+	}
 
-		// Generate successors
-		ArrayList<Move> successors = g.getPossibleMoves();
-		for(int i=0; i<successors.size(); i++){
-			// Evaluate this successor
-			GameState result = g.applyMove(successors.get(i));
-			int value = maxValue(result, depth+1, depthLimit, alpha, beta);
-			
-			// Update alpha 
-			if(value < beta){
-				beta = value;
-			}
+	// Makes each iteration search the root moves in order of their values in the previous iteration, and
+	// keep the result of an iteration cut off by the deadline once it has searched the previous best move
+	public void setRootMoveOrdering(boolean enabled){
+		rootOrdering = enabled;
+	}
 
-			//Possible cutoff 
-			if(beta <= alpha){
-				return alpha;
+	// Sorts moves by their values, best first, keeping moves of equal value in order
+	static void sortRootMoves(ArrayList<Move> moves, int[] values){
+		for(int i=1; i<moves.size(); i++){
+			Move move = moves.get(i);
+			int value = values[i];
+			int j = i;
+			while(j > 0 && values[j-1] < value){
+				moves.set(j, moves.get(j-1));
+				values[j] = values[j-1];
+				j--;
 			}
+			moves.set(j, move);
+			values[j] = value;
 		}
-		return beta; 
+	}
+
+	// Clamps a window bound to the range of values
+	static int windowBound(long bound){
+		return (int)Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, bound));
 	}
 }
\ No newline at end of file
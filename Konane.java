@@ -17,6 +17,11 @@ class Konane{
 	int[] numMoves;
 
 	public Konane(Agent _p1, Agent _p2, boolean remove){
+		this(_p1, _p2, remove, GameState.DEFAULT_BOARD_SIZE, GameState.DEFAULT_BOARD_SIZE);
+	}
+
+	// As above, on a rows x cols board 
+	public Konane(Agent _p1, Agent _p2, boolean remove, int rows, int cols){
 		
 		// Setup players and game state 
 		player1 = _p1;
@@ -25,12 +30,16 @@ class Konane{
 		numMoves = new int[]{0,0};
 		totalMoveTimes = new long[]{0,0};
 
-		GameState g = new GameState();
+		GameState g = new GameState(rows, cols);
 		Move lastMove = null;
 
+		// Remove the two adjacent pieces in the middle of the board, each player their own 
 		if(remove){
-			g.applyMoveInPlace(new Move(new int[]{3,3}, GameState.PLAYER1));
-			g.applyMoveInPlace(new Move(new int[]{3,4}, GameState.PLAYER2));
+			int row = rows/2-1;
+			int col = cols/2-1;
+			int ownCol = ((row + col)%2 == GameState.PLAYER1) ? col : col+1;
+			g.applyMoveInPlace(new Move(new int[]{row, ownCol}, GameState.PLAYER1));
+			g.applyMoveInPlace(new Move(new int[]{row, 2*col+1-ownCol}, GameState.PLAYER2));
 		}
 
 		// Continue alternating turns until game is completed 
@@ -6,16 +6,31 @@ import java.util.Arrays;
 
 class Move{
 
-	final int REMOVAL_STEPS=0;
-	final int ROW = 0;
-	final int COL = 1;
+	final static int REMOVAL_STEPS=0;
+	final static int ROW = 0;
+	final static int COL = 1;
 
-	int steps; 	// The number of steps in the move (0 for a removal move)
-	ArrayList<int[]> coordinates; // The coordinates of the starting piece and each successive location
-	int player; 
+	// Packed encoding of a move in a single int:
+	// bits 0-4 start column, bits 5-9 start row, bits 10-11 direction (index into GameState.DIRECTIONS),
+	// bits 12-16 number of jumps (0 for a removal move), bit 17 player 
+	final static int COORDINATE_BITS = 5;
+	final static int COORDINATE_MASK = (1 << COORDINATE_BITS) - 1;
+	final static int ROW_SHIFT = COORDINATE_BITS;
+	final static int DIRECTION_SHIFT = 2*COORDINATE_BITS;
+	final static int DIRECTION_MASK = 3;
+	final static int STEPS_SHIFT = DIRECTION_SHIFT + 2;
+	final static int STEPS_MASK = 31;
+	final static int PLAYER_SHIFT = STEPS_SHIFT + 5;
+
+	final int code; // The packed move 
 
 	// CONSTRUCTORS 
 
+	// Wrap an already packed move 
+	public Move(int _code){
+		code = _code;
+	}
+
 	// Create a normal move 
 	public Move(int _steps, ArrayList<int[]> _coordinates, int _player){
 		if (_coordinates.size() != _steps+1){
@@ -25,13 +40,39 @@ class Move{
 			if(_coordinates.get(i).length != 2){
 				throw new IllegalArgumentException("Each coordinate must have an x and y component");
 			}
+			if(!encodable(_coordinates.get(i))){
+				throw new IllegalArgumentException("Coordinates must be between 0 and " + Integer.toString(COORDINATE_MASK));
+			}
 		}
 		if(!(_player==GameState.PLAYER1 || _player==GameState.PLAYER2)){
 			throw new IllegalArgumentException("Player must be a valid player");
 		}
-		steps = _steps;
-		coordinates = _coordinates;
-		player = _player;
+		if(_steps > STEPS_MASK){
+			throw new IllegalArgumentException("Too many steps");
+		}
+		int[] start = _coordinates.get(0);
+		if(_steps == REMOVAL_STEPS){
+			code = encodeRemoval(start[ROW], start[COL], _player);
+			return;
+		}
+
+		// Every step must be a jump in the same direction 
+		int direction = -1;
+		for(int k=0; k<GameState.NUM_DIRECTIONS; k++){
+			if(_coordinates.get(1)[ROW] - start[ROW] == GameState.DIRECTIONS[k][ROW] && _coordinates.get(1)[COL] - start[COL] == GameState.DIRECTIONS[k][COL]){
+				direction = k;
+			}
+		}
+		if(direction == -1){
+			throw new IllegalArgumentException("Each step must jump two squares north, east, south or west");
+		}
+		for(int i=1; i<_coordinates.size(); i++){
+			if(_coordinates.get(i)[ROW] - _coordinates.get(i-1)[ROW] != GameState.DIRECTIONS[direction][ROW] 
+				|| _coordinates.get(i)[COL] - _coordinates.get(i-1)[COL] != GameState.DIRECTIONS[direction][COL]){
+				throw new IllegalArgumentException("All steps must be in the same direction");
+			}
+		}
+		code = encode(start[ROW], start[COL], direction, _steps, _player);
 	}
 
 	// Create a removal move 
@@ -39,82 +80,162 @@ class Move{
 		if (removalCoordinates.length != 2){
 			throw new IllegalArgumentException("Removal move should be one x and one y coordinate");
 		}
+		if(!encodable(removalCoordinates)){
+			throw new IllegalArgumentException("Coordinates must be between 0 and " + Integer.toString(COORDINATE_MASK));
+		}
 		if(!(_player==GameState.PLAYER1 || _player==GameState.PLAYER2)){
 			throw new IllegalArgumentException("Player must be a valid player");
 		}
-		steps = 0;
-		coordinates = new ArrayList<int[]>(1);
-		coordinates.add(removalCoordinates);
-		player = _player;
+		code = encodeRemoval(removalCoordinates[ROW], removalCoordinates[COL], _player);
+	}
+
+	// STATIC PACKED ENCODING 
+	// These never allocate, and are what the search uses directly 
+
+	public static int encode(int row, int col, int direction, int steps, int player){
+		return col | (row << ROW_SHIFT) | (direction << DIRECTION_SHIFT) | (steps << STEPS_SHIFT) | (player << PLAYER_SHIFT);
+	}
+
+	public static int encodeRemoval(int row, int col, int player){
+		return encode(row, col, 0, REMOVAL_STEPS, player);
+	}
+
+	public static int startRow(int move){
+		return (move >>> ROW_SHIFT) & COORDINATE_MASK;
+	}
+
+	public static int startCol(int move){
+		return move & COORDINATE_MASK;
+	}
+
+	public static int direction(int move){
+		return (move >>> DIRECTION_SHIFT) & DIRECTION_MASK;
+	}
+
+	public static int steps(int move){
+		return (move >>> STEPS_SHIFT) & STEPS_MASK;
+	}
+
+	public static int player(int move){
+		return move >>> PLAYER_SHIFT;
+	}
+
+	public static boolean isRemoval(int move){
+		return steps(move) == REMOVAL_STEPS;
+	}
+
+	// Row / column of the nth location of the moving piece (0 is the start)
+	public static int nthRow(int move, int n){
+		return startRow(move) + n*GameState.DIRECTIONS[direction(move)][ROW];
+	}
+
+	public static int nthCol(int move, int n){
+		return startCol(move) + n*GameState.DIRECTIONS[direction(move)][COL];
+	}
+
+	// Row / column of the nth piece jumped over (1 is the first)
+	public static int jumpedRow(int move, int n){
+		return startRow(move) + (2*n-1)*GameState.DIRECTIONS[direction(move)][ROW]/2;
+	}
+
+	public static int jumpedCol(int move, int n){
+		return startCol(move) + (2*n-1)*GameState.DIRECTIONS[direction(move)][COL]/2;
+	}
+
+	private static boolean encodable(int[] coordinates){
+		return coordinates[ROW] >= 0 && coordinates[ROW] <= COORDINATE_MASK && coordinates[COL] >= 0 && coordinates[COL] <= COORDINATE_MASK;
 	}
 
 	// ACCESSORS 
+	public int code(){
+		return code;
+	}
+
 	public int steps(){
-		return steps;
+		return steps(code);
 	}
 
 	public int startRow(){
-		return coordinates.get(0)[ROW];
+		return startRow(code);
 	}
 
 	public int startCol(){
-		return coordinates.get(0)[COL];
+		return startCol(code);
 	}
 
 	public int[] startCoordinates(){
-		return coordinates.get(0);
+		return new int[]{startRow(), startCol()};
 	}
 
 	public int endRow(){
-		return coordinates.get(steps)[ROW];
+		return nthRow(code, steps());
 	}
 
 	public int endCol(){
-		return coordinates.get(steps)[COL];
+		return nthCol(code, steps());
+	}
+
+	public int direction(){
+		return direction(code);
 	}
 
+	// Adapter for callers that want the explicit coordinate list 
 	public ArrayList<int[]> coordinates(){
+		ArrayList<int[]> coordinates = new ArrayList<int[]>(steps()+1);
+		for(int i=0; i<steps()+1; i++){
+			coordinates.add(nthStep(i));
+		}
 		return coordinates;
 	}
 
+	// Adapter for callers that want the explicit list of jumped-over coordinates
+	// (search code should use jumpedRow / jumpedCol instead, which do not allocate)
 	public ArrayList<int[]> jumpedOver(){
 		ArrayList<int[]> jumpedOverCoordinates = new ArrayList<int[]>(8);
-		for(int i=1; i<steps+1; i++){
-			jumpedOverCoordinates.add(new int[]{(coordinates.get(i)[0] + coordinates.get(i-1)[0])/2, (coordinates.get(i)[1] + coordinates.get(i-1)[1])/2});
+		for(int i=1; i<steps()+1; i++){
+			jumpedOverCoordinates.add(new int[]{jumpedRow(code, i), jumpedCol(code, i)});
 		}
 		return jumpedOverCoordinates;
 	}
 
 	public int[] nthStep(int n){
-		return coordinates.get(n);
+		return new int[]{nthRow(code, n), nthCol(code, n)};
 	}
 
 	public int player(){
-		return player; 
+		return player(code); 
 	}
 
 	public boolean isRemoval(){
-		return steps==REMOVAL_STEPS;
+		return isRemoval(code);
+	}
+
+	public boolean equals(Object o){
+		return (o instanceof Move) && ((Move)o).code == code;
+	}
+
+	public int hashCode(){
+		return code;
 	}
 
 	// Returns a string representation 
 	public String toString(){
-		String returnString = GameState.PLAYER_SYMBOL[player] + " ";
-		if (steps==REMOVAL_STEPS){
+		String returnString = GameState.PLAYER_SYMBOL[player()] + " ";
+		if (isRemoval()){
 			// A removal move.
 			returnString += "removes ";
 		} else {
 			// A normal move. 
 			returnString += "moves ";
 		}
-		for (int i=0; i<steps+1; i++){
+		for (int i=0; i<steps()+1; i++){
 			if(i==0){
 				returnString += "from ";
 			} else {
 				returnString += "to ";
 			}
-			returnString += "<" + Integer.toString(coordinates.get(i)[ROW]+1) + "," 
-				+ Integer.toString(coordinates.get(i)[COL]+1) + "> ";
+			returnString += "<" + Integer.toString(nthRow(code, i)+1) + "," 
+				+ Integer.toString(nthCol(code, i)+1) + "> ";
 		}
 		return returnString;
 	}
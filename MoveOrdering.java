@@ -0,0 +1,121 @@
+// MoveOrdering.java
+// Orders the successors of a search node so that moves likely to cause a cutoff are tried first: the
+// transposition table's best move, then the killer moves of the ply (recent moves that caused cutoffs
+// at the same depth elsewhere in the tree), then the rest by their history score (how often, and how
+// deep, they have caused cutoffs anywhere). Ties keep board order
+
+class MoveOrdering{
+
+	final static int NUM_KILLERS = 2;
+
+
+	// Scores that put the table move and the killers ahead of every history score
+	final static int HASH_MOVE_SCORE = Integer.MAX_VALUE;
+	final static int KILLER_SCORE = Integer.MAX_VALUE - NUM_KILLERS;
+
+	int[][] killers = new int[0][]; // killers[ply][slot], most recent first
+
+	// History scores, indexed by player, start square, direction and jump count (see historyIndex), for
+	// the board the last search was on; each square has one slot per direction and jump count, and one
+	// for removing the piece
+	BoardGeometry geometry = null;
+	int slotsPerSquare;
+	int[] history = new int[0];
+
+	// Set by the owner of an ordering prepared lazily, to tell which search newSearch was last called for
+	// (see ABMinimaxAgent.workerOrdering)
+	int generation = -1;
+	int[][] scores = new int[0][]; // Scratch space for the scores of each ply's moves
+
+	// Call at the start of each search, from a position on the given board: forgets the killers, which
+	// belong to the previous position's plies, and ages the history so recent cutoffs count more. The
+	// history starts afresh if the board is not the one it was learned on
+	public void newSearch(BoardGeometry _geometry){
+		for(int ply=0; ply<killers.length; ply++){
+			for(int slot=0; slot<NUM_KILLERS; slot++){
+				killers[ply][slot] = TranspositionTable.NO_MOVE;
+			}
+		}
+		if(_geometry != geometry){
+			geometry = _geometry;
+			slotsPerSquare = GameState.NUM_DIRECTIONS*geometry.maxJumps + 1;
+			history = new int[2*geometry.numSquares*slotsPerSquare];
+			return;
+		}
+		for(int i=0; i<history.length; i++){
+			history[i] >>= 1;
+		}
+	}
+
+	// Returns the index in history of a packed move
+	int historyIndex(int move){
+		int square = Move.startRow(move)*geometry.cols + Move.startCol(move);
+		int slot = Move.isRemoval(move) ? 0 : 1 + Move.direction(move)*geometry.maxJumps + Move.steps(move) - 1;
+		return (Move.player(move)*geometry.numSquares + square)*slotsPerSquare + slot;
+	}
+
+	// Reorders the first numMoves entries of moves, the successors of a node at the given ply, best first.
+	// hashMove (or NO_MOVE) is the transposition table's best move for the node
+	public void order(int[] moves, int numMoves, int ply, int hashMove){
+		ensurePly(ply, numMoves);
+		int[] plyKillers = killers[ply];
+		int[] moveScores = scores[ply];
+
+		// Stable insertion sort, highest score first
+		for(int i=0; i<numMoves; i++){
+			int move = moves[i];
+			int score;
+			if(move == hashMove){
+				score = HASH_MOVE_SCORE;
+			} else if(move == plyKillers[0]){
+				score = KILLER_SCORE;
+			} else if(move == plyKillers[1]){
+				score = KILLER_SCORE - 1;
+			} else {
+				score = history[historyIndex(move)];
+			}
+			int j = i;
+			while(j > 0 && moveScores[j-1] < score){
+				moves[j] = moves[j-1];
+				moveScores[j] = moveScores[j-1];
+				j--;
+			}
+			moves[j] = move;
+			moveScores[j] = score;
+		}
+	}
+
+	// Records that move caused a cutoff at the given ply, with depth plies left to search below it
+	public void cutoff(int move, int ply, int depth){
+		ensurePly(ply, 0);
+		int[] plyKillers = killers[ply];
+		if(plyKillers[0] != move){
+			plyKillers[1] = plyKillers[0];
+			plyKillers[0] = move;
+		}
+		// Deeper cutoffs prune more, so they count for more; saturate rather than overflow into the killers' scores
+		int index = historyIndex(move);
+		history[index] = (int)Math.min((long)history[index] + depth*depth, KILLER_SCORE - NUM_KILLERS);
+	}
+
+	// Makes sure there are killer slots for ply and room to score numMoves moves at it
+	void ensurePly(int ply, int numMoves){
+		if(ply >= killers.length){
+			int[][] grownKillers = new int[ply+1][];
+			int[][] grownScores = new int[ply+1][];
+			for(int i=0; i<killers.length; i++){
+				grownKillers[i] = killers[i];
+				grownScores[i] = scores[i];
+			}
+			for(int i=killers.length; i<grownKillers.length; i++){
+				grownKillers[i] = new int[]{TranspositionTable.NO_MOVE, TranspositionTable.NO_MOVE};
+				grownScores[i] = new int[0];
+			}
+			killers = grownKillers;
+			scores = grownScores;
+		}
+		if(scores[ply].length < numMoves){
+			scores[ply] = new int[numMoves];
+		}
+	}
+}
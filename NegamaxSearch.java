@@ -0,0 +1,441 @@
+// NegamaxSearch.java
+// The depth-limited alpha-beta search every minimax agent runs, written once in negamax form: a node's
+// value is from the point of view of the player to move there, and is the negation of the best of its
+// successors' values. The search is fail-soft, so a result outside the window (alpha, beta) is still the
+// tightest bound found rather than alpha or beta themselves.
+//
+// The agent supplies the evaluation function, and its options choose the move ordering, principal
+// variation search and transposition table. The hooks below (evaluate, probe, store, onCutoff) can be
+// overridden to change how leaves are scored, how results are cached and what a cutoff teaches the
+// ordering. A search applies and undoes moves on the GameState it is given and keeps per-ply scratch
+// space, so each thread searching needs its own NegamaxSearch.
+//
+// If the agent has a split pool and the search runs in it, nodes at least minSplitDepth from the depth
+// limit are searched in parallel, Young Brothers Wait style: the eldest successor is searched first, to
+// set alpha, then the rest become tasks in the pool, each on its own copy of the position and with its
+// own NegamaxSearch. A cutoff in one cancels its siblings and everything below them.
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class NegamaxSearch{
+
+	// Bigger than any evaluation, which lies in -(INFINITY-1)..INFINITY-1; -INFINITY is still an int
+	final static int INFINITY = Integer.MAX_VALUE;
+
+	final ABMinimaxAgent agent;
+	final TranspositionTable table; // Null if disabled
+	final MoveOrdering ordering; // Null if disabled
+	final boolean principalVariation;
+
+	// Whether a node searched since this was last cleared was cut off by the depth limit, rather than
+	// ending the game; if not, the result holds at any depth
+	public boolean depthLimitReached = false;
+
+	// Statistics: nodes visited, nodes cut off by a successor or by the table, and null-window searches
+	// that had to be repeated with the full window
+	public long nodes = 0;
+	public long cutoffs = 0;
+	public long tableCutoffs = 0;
+	public long researches = 0;
+
+	// Deadline: once System.nanoTime() passes deadlineNanos (if hasDeadline), the search is aborted. The
+	// clock is read once every pollInterval nodes. An aborted search unwinds at once, undoing its moves
+	// and storing nothing, and its values are meaningless
+	final static int DEFAULT_POLL_INTERVAL = 1024;
+	boolean hasDeadline = false;
+	long deadlineNanos;
+	int pollInterval = DEFAULT_POLL_INTERVAL;
+	long nextPoll = 0;
+	public volatile boolean aborted = false; // Also set by abort(), from any thread
+
+	// Whether table entries only cut off nodes they were searched to exactly the depth of. An entry from
+	// a deeper search, or one searched to the end of the game, still orders the node's moves. A result
+	// then depends only on the position and depth, not on what other searches have stored
+	public boolean exactDepthCutoffs = false;
+
+	// One move buffer per ply, reused so generation does not allocate
+	int[][] moveBuffers = new int[0][];
+
+	// The successors of one node searched in parallel: the node's window, with alpha raised as siblings
+	// find better values, and whether a sibling has caused a cutoff
+	static class SplitPoint{
+		final SplitPoint parent; // The split point this node lies below, if any
+		final NegamaxSearch owner; // The search the node belongs to
+		final AtomicInteger alpha;
+		final int beta;
+		volatile boolean cancelled = false;
+
+		SplitPoint(SplitPoint _parent, NegamaxSearch _owner, int _alpha, int _beta){
+			parent = _parent;
+			owner = _owner;
+			alpha = new AtomicInteger(_alpha);
+			beta = _beta;
+		}
+
+		// Whether the result of searching below this split point is no longer needed
+		boolean isCancelled(){
+			for(SplitPoint split = this; split != null; split = split.parent){
+				if(split.cancelled || split.owner.aborted){
+					return true;
+				}
+			}
+			return false;
+		}
+
+		// Raises alpha to value, if higher
+		void raiseAlpha(int value){
+			int current = alpha.get();
+			while(value > current && !alpha.compareAndSet(current, value)){
+				current = alpha.get();
+			}
+		}
+	}
+
+	// Parallel search: the pool nodes are split in and the shallowest depth (left to search) worth
+	// splitting, both from the agent, and the split point this search is a task of (null at the root)
+	final ForkJoinPool splitPool;
+	final int minSplitDepth;
+	final SplitPoint split;
+
+	public NegamaxSearch(ABMinimaxAgent _agent){
+		this(_agent, _agent.ordering);
+	}
+
+	// As above, with its own move ordering (or null), for a search on another thread
+	public NegamaxSearch(ABMinimaxAgent _agent, MoveOrdering _ordering){
+		this(_agent, _ordering, null);
+	}
+
+	// As above, for a task searching one successor of the given split point
+	NegamaxSearch(ABMinimaxAgent _agent, MoveOrdering _ordering, SplitPoint _split){
+		agent = _agent;
+		table = agent.table;
+		ordering = _ordering;
+		principalVariation = agent.principalVariation;
+		splitPool = agent.splitPool;
+		minSplitDepth = agent.minSplitDepth;
+		split = _split;
+	}
+
+	// Makes the search abort once System.nanoTime() reaches deadline
+	public void setDeadline(long deadline){
+		hasDeadline = true;
+		deadlineNanos = deadline;
+		aborted = false;
+		nextPoll = nodes;
+	}
+
+	// Stops the search as soon as it next visits a node; safe to call from another thread
+	public void abort(){
+		aborted = true;
+	}
+
+	// Lets the search run to completion
+	public void clearDeadline(){
+		hasDeadline = false;
+		aborted = false;
+	}
+
+	// Reads the clock every pollInterval nodes: more often stops closer to the deadline, less often costs less
+	public void setPollInterval(int nodes){
+		if(nodes <= 0){
+			throw new IllegalArgumentException("Poll interval must be positive");
+		}
+		pollInterval = nodes;
+	}
+
+	// Returns the value, for the player who made it, of a move from the root, now applied to state; or at
+	// most bestValue (the best value of the moves searched before it) if the move is no better. The root
+	// window (alpha, beta) may be Integer.MIN_VALUE..Integer.MAX_VALUE, the agents' "no value yet" bounds
+	public int rootValue(GameState state, int depthLimit, int bestValue, int alpha, int beta){
+		alpha = Math.max(alpha, -INFINITY);
+		if(!principalVariation || bestValue <= alpha){
+			return -search(state, 1, depthLimit, -beta, -alpha);
+		}
+		int value = -search(state, 1, depthLimit, -bestValue-1, -bestValue);
+		if(value > bestValue && value < beta && !aborted){
+			researches++;
+			value = -search(state, 1, depthLimit, -beta, -bestValue);
+		}
+		return value;
+	}
+
+	// Returns the value of g, at the given ply from the root, for the player to move: exact if it lies
+	// strictly within (alpha, beta), else a bound on the same side of the window. Leaves g as it was found
+	public int search(GameState g, int ply, int depthLimit, int alpha, int beta){
+		nodes++;
+		if(hasDeadline && nodes >= nextPoll){
+			nextPoll = nodes + pollInterval;
+			if(System.nanoTime() - deadlineNanos >= 0){
+				aborted = true;
+			}
+		}
+		if(aborted || (split != null && split.isCancelled())){
+			aborted = true;
+			return 0;
+		}
+
+		// Depth/terminal cutoff
+		if(g.isTerminal()){
+			return evaluate(g);
+		}
+		if(ply == depthLimit){
+			depthLimitReached = true;
+			return evaluate(g);
+		}
+		int depth = depthLimit - ply;
+
+		// Transposition table cutoff. The table is keyed by the canonical image, found once per node
+		int symmetry = (table != null) ? g.canonicalSymmetry() : GameState.IDENTITY;
+		int hashMove = TranspositionTable.NO_MOVE;
+		long entry = probe(g, symmetry);
+		if(TranspositionTable.bound(entry) != TranspositionTable.EMPTY){
+			if(TranspositionTable.cuts(entry, depth, alpha, beta) && (!exactDepthCutoffs || TranspositionTable.depth(entry) == depth)){
+				// Unless that result was searched to the end of the game, it depends on the depth limit
+				if(TranspositionTable.depth(entry) != TranspositionTable.COMPLETE){
+					depthLimitReached = true;
+				}
+				tableCutoffs++;
+				return TranspositionTable.score(entry);
+			}
+			hashMove = tableMove(g, entry, symmetry);
+		}
+
+		// Track the depth limit in this subtree alone, so complete results can be stored as valid at any depth
+		boolean reachedElsewhere = depthLimitReached;
+		depthLimitReached = false;
+
+		// Generate successors, trying the table's best move first
+		int[] successors = moveBuffer(ply, g.maxMoves());
+		int numSuccessors = g.getPossibleMoves(successors);
+		orderMoves(successors, numSuccessors, ply, hashMove);
+		int originalAlpha = alpha;
+		int bestValue = -INFINITY;
+		int bestMove = TranspositionTable.NO_MOVE;
+		for(int i=0; i<numSuccessors; i++){
+			// Once the eldest successor has been searched, search the rest in parallel if worthwhile
+			if(i == 1 && depth >= minSplitDepth && numSuccessors > 2 && splitPool != null && ForkJoinTask.getPool() == splitPool){
+				SplitPoint node = splitSearch(g, successors, numSuccessors, ply, depthLimit, alpha, beta);
+				if(aborted){
+					return 0;
+				}
+				if(node.alpha.get() > bestValue){
+					bestValue = node.alpha.get();
+					if(bestValue > alpha){
+						alpha = bestValue;
+						bestMove = splitBestMove;
+					}
+				}
+				if(alpha >= beta){
+					cutoffs++;
+					onCutoff(bestMove, ply, depth);
+				}
+				break;
+			}
+
+			// Evaluate this successor
+			g.applyTrustedMove(successors[i]);
+			int value = childValue(g, ply+1, depthLimit, alpha, beta, i > 0);
+			g.undoMove(successors[i]);
+			if(aborted){
+				return 0;
+			}
+
+			if(value > bestValue){
+				bestValue = value;
+				if(value > alpha){
+					alpha = value;
+					bestMove = successors[i];
+				}
+			}
+
+			//Possible cutoff
+			if(alpha >= beta){
+				cutoffs++;
+				onCutoff(successors[i], ply, depth);
+				break;
+			}
+		}
+
+		int bound;
+		if(bestValue >= beta){
+			bound = TranspositionTable.LOWER;
+		} else if(bestValue > originalAlpha){
+			bound = TranspositionTable.EXACT;
+		} else {
+			bound = TranspositionTable.UPPER;
+		}
+		store(g, symmetry, depthLimitReached ? depth : TranspositionTable.COMPLETE, bound, bestValue, bestMove);
+		depthLimitReached |= reachedElsewhere;
+		return bestValue;
+	}
+
+	// The best of the successors searched by the latest splitSearch, or NO_MOVE if none beat its alpha
+	int splitBestMove;
+
+	// Searches successors 1..numMoves-1 of g, whose eldest has been searched, as parallel tasks. Returns the
+	// split point, whose alpha is the best of their values and the original alpha; splitBestMove is the
+	// move with that value. Sets aborted if a task was stopped by the deadline or by a cancellation above
+	SplitPoint splitSearch(GameState g, int[] moves, int numMoves, final int ply, final int depthLimit, int alpha, final int beta){
+		final SplitPoint node = new SplitPoint(split, this, alpha, beta);
+		final int[] values = new int[numMoves];
+		final NegamaxSearch[] searches = new NegamaxSearch[numMoves];
+		ArrayList<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for(int i=1; i<numMoves; i++){
+			final int index = i;
+			final GameState state = g.copy();
+			state.applyTrustedMove(moves[i]);
+			tasks.add(new RecursiveAction(){
+				protected void compute(){
+					// Made here, on the thread that runs the task, so it gets that thread's move ordering
+					NegamaxSearch search = new NegamaxSearch(agent, agent.workerOrdering(), node);
+					search.hasDeadline = hasDeadline;
+					search.deadlineNanos = deadlineNanos;
+					search.pollInterval = pollInterval;
+					searches[index] = search;
+					int taskAlpha = node.alpha.get();
+					if(taskAlpha >= beta || node.isCancelled()){
+						search.aborted = true;
+						return;
+					}
+					int value = search.childValue(state, ply+1, depthLimit, taskAlpha, beta, true);
+					if(search.aborted){
+						return;
+					}
+					values[index] = value;
+					node.raiseAlpha(value);
+					if(value >= beta){
+						node.cancelled = true;
+					}
+				}
+			});
+		}
+		ForkJoinTask.invokeAll(tasks);
+
+		// Gather the results. Tasks stopped because a sibling cut off do not matter; any other stop means
+		// this node's result is unknown
+		splitBestMove = TranspositionTable.NO_MOVE;
+		int bestValue = alpha;
+		for(int i=1; i<numMoves; i++){
+			NegamaxSearch search = searches[i];
+			nodes += search.nodes;
+			cutoffs += search.cutoffs;
+			tableCutoffs += search.tableCutoffs;
+			researches += search.researches;
+			depthLimitReached |= search.depthLimitReached;
+			if(search.aborted){
+				if(!node.cancelled){
+					aborted = true;
+				}
+			} else if(values[i] > bestValue){
+				bestValue = values[i];
+				splitBestMove = moves[i];
+			}
+		}
+		return node;
+	}
+
+	// Returns the value of g, a successor of a node with window (alpha, beta), for the player who moved
+	// to it. A later successor under principal variation search is first searched with a null window,
+	// which only shows whether it beats alpha; the full window is needed only if it does without reaching beta
+	int childValue(GameState g, int ply, int depthLimit, int alpha, int beta, boolean later){
+		if(!principalVariation || !later){
+			return -search(g, ply, depthLimit, -beta, -alpha);
+		}
+		int value = -search(g, ply, depthLimit, -alpha-1, -alpha);
+		if(value > alpha && value < beta && !aborted){
+			researches++;
+			value = -search(g, ply, depthLimit, -beta, -alpha);
+		}
+		return value;
+	}
+
+	// HOOKS
+
+	// Static evaluation of g for the player to move
+	protected int evaluate(GameState g){
+		int value = agent.e(g);
+		return agent.isMax(g) ? value : -value;
+	}
+
+	// Returns the table entry for g, whose canonicalSymmetry() is symmetry, or 0 (bound EMPTY) if there
+	// is none or no table
+	protected long probe(GameState g, int symmetry){
+		if(table == null){
+			return 0;
+		}
+		return table.probe(g.hash(symmetry));
+	}
+
+	// Records a search result in the transposition table, if there is one. Positions are stored
+	// under their canonical hash, so all symmetric images of a position share one entry, and the
+	// best move is stored as it applies to the canonical image; symmetry is g's canonicalSymmetry()
+	protected void store(GameState g, int symmetry, int depth, int bound, int score, int bestMove){
+		if(table != null){
+			if(bestMove != TranspositionTable.NO_MOVE){
+				bestMove = g.toCanonical(bestMove, symmetry);
+			}
+			table.store(g.hash(symmetry), depth, bound, score, bestMove);
+		}
+	}
+
+	// Called when move caused a cutoff at the given ply, with depth plies left to search below it
+	protected void onCutoff(int move, int ply, int depth){
+		if(ordering != null){
+			ordering.cutoff(move, ply, depth);
+		}
+	}
+
+	// Orders the first numMoves entries of moves, the successors of a node at the given ply, with
+	// hashMove (or NO_MOVE) first: by killer moves and history scores if enabled, else in board order
+	protected void orderMoves(int[] moves, int numMoves, int ply, int hashMove){
+		if(ordering != null){
+			ordering.order(moves, numMoves, ply, hashMove);
+		} else {
+			moveToFront(moves, numMoves, hashMove);
+		}
+	}
+
+	// Returns the best move of a table entry for g, mapped back from the canonical image to g
+	int tableMove(GameState g, long entry, int symmetry){
+		int move = TranspositionTable.move(entry);
+		if(move == TranspositionTable.NO_MOVE){
+			return move;
+		}
+		return g.fromCanonical(move, symmetry);
+	}
+
+	// Moves the given move to the front of the first numMoves entries of moves, if it is there,
+	// keeping the others in order
+	static void moveToFront(int[] moves, int numMoves, int move){
+		for(int i=0; i<numMoves; i++){
+			if(moves[i] == move){
+				for(int j=i; j>0; j--){
+					moves[j] = moves[j-1];
+				}
+				moves[0] = move;
+				return;
+			}
+		}
+	}
+
+	// Returns the move buffer for the given ply, able to hold at least size moves, growing the set of
+	// buffers if the search goes deeper (or the board is larger) than before
+	int[] moveBuffer(int ply, int size){
+		if(ply >= moveBuffers.length){
+			int[][] grown = new int[ply+1][];
+			for(int i=0; i<moveBuffers.length; i++){
+				grown[i] = moveBuffers[i];
+			}
+			moveBuffers = grown;
+		}
+		if(moveBuffers[ply] == null || moveBuffers[ply].length < size){
+			moveBuffers[ply] = new int[size];
+		}
+		return moveBuffers[ply];
+	}
+}
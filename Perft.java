@@ -0,0 +1,126 @@
+// Perft.java
+// Counts the leaves of the full move tree to a given depth, to measure move generation speed and
+// to check move generation against another implementation. Moves are generated, applied and undone
+// the same way the search agents do it.
+//
+// Usage: java Perft <depth> [divide] [hash <megabytes>] [size <rows> <cols>] [position "<notation>"]
+//   divide     also prints the number of leaves below each move from the start position
+//   hash       reuses the counts of positions already seen (and of their symmetric images)
+//   size       starts from the initial position of a rows x cols board instead of 8x8
+//   position   starts from a position in GameState.toNotation() form, e.g. "XOXO/O.OX/XOXO/OXOX X"
+
+import java.util.ArrayList;
+
+class Perft{
+
+	int[][] moveBuffers;
+	long[] hashKeys = null; // Table of counts already found for (position, depth), when hashing
+	long[] hashCounts = null;
+	int hashMask;
+
+	public Perft(int maxDepth, GameState g){
+		moveBuffers = new int[maxDepth+1][g.maxMoves()];
+	}
+
+	// Turns on the table of counts already found, using at most the given number of megabytes
+	public void setHashTable(int megabytes){
+		if(megabytes <= 0){
+			throw new IllegalArgumentException("Table must have a positive size");
+		}
+		int entries = Integer.highestOneBit((int)Math.min(((long)megabytes << 20)/16, 1 << 30));
+		hashKeys = new long[entries];
+		hashCounts = new long[entries];
+		hashMask = entries - 1;
+	}
+
+	// Returns the number of move sequences of length depth from g, which is left as it was found
+	public long perft(GameState g, int depth){
+		if(depth == 0){
+			return 1;
+		}
+		int[] moves = moveBuffers[depth];
+		int numMoves = g.getPossibleMoves(moves);
+		if(depth == 1){
+			return numMoves;
+		}
+
+		// Positions are hashed with their depth, under the hash they share with their symmetric images
+		long key = 0;
+		int index = 0;
+		if(hashKeys != null){
+			key = g.canonicalHash() ^ (depth * 0x9e3779b97f4a7c15L);
+			index = (int)key & hashMask;
+			if(hashKeys[index] == key){
+				return hashCounts[index];
+			}
+		}
+
+		long nodes = 0;
+		for(int i=0; i<numMoves; i++){
+			g.applyTrustedMove(moves[i]);
+			nodes += perft(g, depth-1);
+			g.undoMove(moves[i]);
+		}
+
+		if(hashKeys != null){
+			hashKeys[index] = key;
+			hashCounts[index] = nodes;
+		}
+		return nodes;
+	}
+
+	// Prints the number of leaves below each move from g, and returns their total
+	public long divide(GameState g, int depth){
+		long total = 0;
+		ArrayList<Move> moves = g.getPossibleMoves();
+		for(int i=0; i<moves.size(); i++){
+			Move m = moves.get(i);
+			g.applyMoveInPlace(m);
+			long nodes = perft(g, depth-1);
+			g.undoMove(m);
+			System.out.println(m.toString() + ": " + Long.toString(nodes));
+			total += nodes;
+		}
+		return total;
+	}
+
+	public static void main(String[] args){
+		if(args.length == 0){
+			System.out.println("Usage: java Perft <depth> [divide] [hash <megabytes>] [size <rows> <cols>] [position \"<notation>\"]");
+			return;
+		}
+		int depth = Integer.parseInt(args[0]);
+		boolean divide = false;
+		int megabytes = 0;
+		GameState g = new GameState();
+		for(int i=1; i<args.length; i++){
+			if(args[i].equals("divide")){
+				divide = true;
+			} else if(args[i].equals("hash")){
+				megabytes = Integer.parseInt(args[++i]);
+			} else if(args[i].equals("size")){
+				g = new GameState(Integer.parseInt(args[i+1]), Integer.parseInt(args[i+2]));
+				i += 2;
+			} else if(args[i].equals("position")){
+				g = new GameState(args[++i]);
+			} else {
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+		if(depth < 1){
+			throw new IllegalArgumentException("Depth must be at least 1");
+		}
+
+		System.out.println(g);
+		Perft p = new Perft(depth, g);
+		if(megabytes > 0){
+			p.setHashTable(megabytes);
+			g.setSymmetryHashes(true);
+		}
+		long startTime = System.nanoTime();
+		long nodes = divide ? p.divide(g, depth) : p.perft(g, depth);
+		long elapsed = Math.max(System.nanoTime() - startTime, 1);
+		System.out.println("Depth " + Integer.toString(depth) + ": " + Long.toString(nodes) + " nodes in "
+			+ Long.toString(elapsed/1000000) + " ms (" + Long.toString((long)(nodes*1e9/elapsed)) + " nodes/sec)");
+	}
+}
@@ -13,29 +13,10 @@ public class RABMinimaxAgent extends ABMinimaxAgent implements Agent{
 		super(_player, _strategy, _depthLimit);
 	}
 
-	// Find and return minimax-recommended move 
-	public Move getMove(GameState g, Move lastMove){
-		// Generate possible successors 
-		ArrayList<Move> successors = g.getPossibleMoves();
+	// Searches the moves from g in a random order
+	protected ArrayList<Move> rootMoves(GameState g){
+		ArrayList<Move> successors = g.getDistinctMoves();
 		Collections.shuffle(successors);
-
-		int bestMoveValue = Integer.MIN_VALUE;
-		Move bestMove = null;
-
-		for(int i=0; i<successors.size(); i++){
-			// Get gamestate resulting from each 
-			Move move = successors.get(i);
-			GameState result = g.applyMove(move);
-			
-			//Apply minimax to each to determine expected value 
-			int value = minValue(result, 1, depthLimit, Integer.MIN_VALUE, Integer.MAX_VALUE);
-
-			if(value > bestMoveValue){
-				bestMoveValue = value;
-				bestMove = move;
-			}
-
-		}
-		return bestMove;
+		return successors;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+// TranspositionTable.java
+// A fixed-size hash table of search results, keyed by GameState's Zobrist hash.
+// Searches on several threads can share one table without locking: each slot's key is stored XORed with
+// its data, so a slot caught half-written by another thread fails the key check and reads as empty
+
+class TranspositionTable{
+
+	// Bound types: whether the stored score is the node's exact value, or only a lower / upper bound on it
+	final static public int EMPTY = 0;
+	final static public int EXACT = 1;
+	final static public int LOWER = 2;
+	final static public int UPPER = 3;
+
+	// Depth stored for subtrees that were searched to the end of the game, which are valid at any depth
+	final static public int COMPLETE = 255;
+
+	// Stored in place of a best move when no move raised the score (an upper bound)
+	final static public int NO_MOVE = (1 << 18) - 1;
+
+	// Each entry's data is packed into one long:
+	// bits 0-31 score, bits 32-49 best move, bits 50-57 depth, bits 58-59 bound, bits 60-63 generation
+	final static int MOVE_SHIFT = 32;
+	final static int DEPTH_SHIFT = 50;
+	final static int BOUND_SHIFT = 58;
+	final static int GENERATION_SHIFT = 60;
+
+	final static int BYTES_PER_ENTRY = 16;
+
+	long[] keys;
+	long[] data;
+	int mask;
+	int generation; // Incremented per search, so entries from earlier searches can be replaced
+
+	// Creates a table using at most the given number of megabytes (rounded down to a power of two entries)
+	public TranspositionTable(int megabytes){
+		if(megabytes <= 0){
+			throw new IllegalArgumentException("Table must have a positive size");
+		}
+		long maxEntries = ((long)megabytes << 20)/BYTES_PER_ENTRY;
+		int entries = Integer.highestOneBit((int)Math.min(maxEntries, 1 << 30));
+		keys = new long[entries];
+		data = new long[entries];
+		mask = entries - 1;
+		generation = 0;
+	}
+
+	// Call at the start of each search: entries stored before it become replaceable
+	public void newSearch(){
+		generation = (generation + 1) & 15;
+	}
+
+	// Returns the packed entry stored for this hash, or 0 (bound EMPTY) if there is none
+	public long probe(long hash){
+		int index = (int)hash & mask;
+		long entry = data[index];
+		if((keys[index] ^ entry) == hash){
+			return entry;
+		}
+		return 0;
+	}
+
+	// Stores a result, depth-preferred: an entry from the current search is only replaced by one
+	// searched at least as deep
+	public void store(long hash, int depth, int bound, int score, int move){
+		int index = (int)hash & mask;
+		long old = data[index];
+		if(bound(old) != EMPTY && generation(old) == generation && depth(old) > depth){
+			return;
+		}
+		long entry = (score & 0xffffffffL) | ((long)move << MOVE_SHIFT) | ((long)depth << DEPTH_SHIFT)
+			| ((long)bound << BOUND_SHIFT) | ((long)generation << GENERATION_SHIFT);
+		keys[index] = hash ^ entry;
+		data[index] = entry;
+	}
+
+	// Removes all entries
+	public void clear(){
+		for(int i=0; i<keys.length; i++){
+			keys[i] = 0;
+			data[i] = 0;
+		}
+	}
+
+	public int size(){
+		return keys.length;
+	}
+
+	// ENTRY ACCESSORS
+
+	public static int score(long entry){
+		return (int)entry;
+	}
+
+	// The best move, or NO_MOVE if there is none (including when entry is EMPTY)
+	public static int move(long entry){
+		if(bound(entry) == EMPTY){
+			return NO_MOVE;
+		}
+		return (int)(entry >>> MOVE_SHIFT) & NO_MOVE;
+	}
+
+	public static int depth(long entry){
+		return (int)(entry >>> DEPTH_SHIFT) & 255;
+	}
+
+	public static int bound(long entry){
+		return (int)(entry >>> BOUND_SHIFT) & 3;
+	}
+
+	static int generation(long entry){
+		return (int)(entry >>> GENERATION_SHIFT) & 15;
+	}
+
+	// Returns true if entry, searched to at least depth, settles the value of a node searched with
+	// the window alpha..beta
+	public static boolean cuts(long entry, int depth, int alpha, int beta){
+		if(depth(entry) < depth){
+			return false;
+		}
+		int bound = bound(entry);
+		int score = score(entry);
+		return bound == EXACT || (bound == LOWER && score >= beta) || (bound == UPPER && score <= alpha);
+	}
+}